@@ -1,106 +1,169 @@
 package com.example.demo.camel;
 
+import com.example.demo.imaging.DerivativePipeline;
 import com.example.demo.model.ConnectionFolder;
-import com.example.demo.model.QRCode;
 import com.example.demo.model.QRCodeItem;
-import com.example.demo.repository.QRCodeItemRepository;
+import com.example.demo.model.QRCodeRef;
 import com.example.demo.repository.QRCodeRepository;
+import com.example.demo.service.FolderQRCodeCache;
+import com.example.demo.service.QRCodeItemWriter;
+import com.example.demo.storage.ContentStore;
+import com.example.demo.storage.ContentStore.Blob;
 import org.apache.camel.builder.RouteBuilder;
-import org.apache.camel.component.file.GenericFile;
+import org.apache.camel.util.concurrent.ThreadPoolRejectedPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import javax.imageio.ImageIO;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ConnectionFolderRouteBuilder extends RouteBuilder {
     private final String photoFolderPath;
-    private final String pollingFolderPath;
     private final ConnectionFolder connection;
     private final QRCodeRepository qrCodeRepository;
-    private final QRCodeItemRepository itemRepository;
+    private final FolderQRCodeCache folderCodes;
+    private final QRCodeItemWriter itemWriter;
+    private final DerivativePipeline derivatives;
+    private final ContentStore store;
+    private final int poolSize;
+    private final int maxQueueSize;
     private static final Logger log = LoggerFactory.getLogger(ConnectionFolderRouteBuilder.class);
 
     public ConnectionFolderRouteBuilder(@Value("${photo_folder_path}") String photoFolderPath,
-                                        @Value("${polling_folder_path}") String pollingFolderPath,
                                         ConnectionFolder connection,
                                         QRCodeRepository qrCodeRepository,
-                                        QRCodeItemRepository itemRepository) {
+                                        FolderQRCodeCache folderCodes,
+                                        QRCodeItemWriter itemWriter,
+                                        DerivativePipeline derivatives,
+                                        ContentStore store,
+                                        int poolSize,
+                                        int maxQueueSize) {
         this.photoFolderPath = photoFolderPath;
-        this.pollingFolderPath = pollingFolderPath;
         this.connection = connection;
         this.qrCodeRepository = qrCodeRepository;
-        this.itemRepository = itemRepository;
+        this.folderCodes = folderCodes;
+        this.itemWriter = itemWriter;
+        this.derivatives = derivatives;
+        this.store = store;
+        this.poolSize = poolSize;
+        this.maxQueueSize = maxQueueSize;
     }
 
     @Override
     public void configure() {
-        var route = from("file://" + pollingFolderPath + "??noop=true&antInclude=**/*.jpg&antFilterCaseSensitive=false");
+        // A full pool is routine back-pressure, not an error; FolderWatcher retries the file.
+        onException(RejectedExecutionException.class).logExhausted(false);
+
+        // Files are pushed here by FolderWatcher rather than polled.
+        var route = from(FolderWatcher.INGEST_ENDPOINT + connection.getId());
         route.routeId(connection.getId().toString());
         if (!connection.isEnabled()) {
             route.noAutoStartup();
         }
 
-        route.process(exchange -> {
-            log.debug("id={} name={}", connection.getId(), connection.getName());
-            List<QRCode> codes = qrCodeRepository.findByConnectionFolderId(connection.getId());
-            GenericFile<File> fileGeneric = exchange.getIn().getBody(GenericFile.class);
-            File file = fileGeneric.getFile();
-            String fileNameUuid = UUID.randomUUID().toString();
-            String fileName = fileNameUuid + ".jpg";
-            if (codes.isEmpty()) {
-                log.info("No QR codes linked to folder connection {}", connection.getId());
-            }
-            for (QRCode code : codes) {
-                QRCodeItem item = new QRCodeItem();
-                item.setQrCode(code);
-                item.setUuid(code.getUuid());
-                item.setFileName(fileName);
-                item.setCreatedBy("system");
-                item.setUpdatedBy("system");
-                itemRepository.save(item);
-                log.info("Saved QR code item {} for QR code {}", fileName, code.getUuid());
+        // Hand files off to a bounded per-route pool. When the queue is full the file is rejected
+        // and FolderWatcher holds it back and offers it again, so the watcher never does the work.
+        route.threads(poolSize, poolSize)
+            .maxQueueSize(maxQueueSize)
+            .rejectedPolicy(ThreadPoolRejectedPolicy.Abort)
+            .threadName("ingest-" + connection.getId())
+            .process(exchange -> {
+                if (!ingest(exchange.getIn().getBody(File.class))) {
+                    exchange.setProperty(FolderWatcher.SKIPPED, true);
+                }
+            })
+            .log("Processed file ${body.name}");
+    }
 
-                String fullDestinationFolderPath = photoFolderPath + code.getUuid();
+    /**
+     * Moves the file into the content store, renders its variants there if the content is new,
+     * then links the original and variants into every linked QR code's folder under the
+     * content hash. A code whose folder already holds the same content gets no second item.
+     * The file is only removed once it is in at least one folder; otherwise this returns false
+     * and the file is left where it is, to be offered again later.
+     */
+    private boolean ingest(File file) throws InterruptedException {
+        log.debug("id={} name={}", connection.getId(), connection.getName());
+        List<QRCodeRef> codes = folderCodes.codesFor(connection.getId());
+        if (codes.isEmpty()) {
+            log.info("No QR codes linked to folder connection {}", connection.getId());
+            return false;
+        }
+        try (Blob blob = store.store(file.toPath())) {
+            log.info("Stored file {} as {}", file.getName(), blob.hash());
+            String fileName = blob.fileName();
+            List<String> variants = blob.created() ? render(blob) : storedVariants(blob);
+            List<String> produced = new ArrayList<>();
+            produced.add(fileName);
+            variants.forEach(v -> produced.add(DerivativePipeline.variantFileName(fileName, v)));
+
+            boolean placed = false;
+            for (QRCodeRef code : codes) {
+                Path destDir = Paths.get(photoFolderPath + code.uuid());
                 try {
-                    Path destDir = Paths.get(fullDestinationFolderPath);
                     Files.createDirectories(destDir);
-                    Path destPath = destDir.resolve(fileName);
-                    Files.move(file.toPath(), destPath, StandardCopyOption.REPLACE_EXISTING);
-                    log.info("Moved file {} to {}", file.getName(), destPath);
-                    createThumbnail(destPath, destDir.resolve(fileNameUuid + "-thumb.jpg"));
+                    if (!ContentStore.link(blob.path(), destDir.resolve(fileName))) {
+                        log.info("File {} is already in QR code {}", file.getName(), code.uuid());
+                        placed = true;
+                        continue;
+                    }
+                    for (String name : produced.subList(1, produced.size())) {
+                        ContentStore.link(blob.path().resolveSibling(name), destDir.resolve(name));
+                    }
                 } catch (IOException e) {
-                    log.warn("Failed to move file {} to thumbnail folder {}", file.getName(), fullDestinationFolderPath, e);
+                    log.warn("Failed to link file {} into {}", fileName, destDir, e);
+                    continue;
                 }
+                enqueue(code, blob, variants);
+                placed = true;
             }
-        }).log("Polled file ${file:name}");
+            if (placed) {
+                blob.consume();
+            }
+            return placed;
+        } catch (IOException e) {
+            log.warn("Failed to store file {}", file.getName(), e);
+            return false;
+        }
     }
 
-    private void createThumbnail(Path sourcePath, Path thumbPath) {
+    private List<String> render(Blob blob) {
         try {
-            BufferedImage original = ImageIO.read(sourcePath.toFile());
-            int thumbWidth = 200;
-            int thumbHeight = (int) ((double) thumbWidth / original.getWidth() * original.getHeight());
-            BufferedImage thumb = new BufferedImage(thumbWidth, thumbHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = thumb.createGraphics();
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g.drawImage(original, 0, 0, thumbWidth, thumbHeight, null);
-            g.dispose();
-            ImageIO.write(thumb, "jpg", thumbPath.toFile());
-            log.info("Created thumbnail {}", thumbPath);
+            return derivatives.generate(blob.path(), blob.path().getParent(), blob.hash());
         } catch (IOException e) {
-            log.warn("Failed to create thumbnail for {}", sourcePath, e);
+            log.warn("Failed to create derivatives for {}", blob.hash(), e);
+            return List.of();
         }
     }
+
+    private List<String> storedVariants(Blob blob) {
+        List<String> variants = new ArrayList<>();
+        for (DerivativePipeline.Variant variant : derivatives.variants()) {
+            String name = DerivativePipeline.variantFileName(blob.fileName(), variant.name());
+            if (Files.exists(blob.path().resolveSibling(name))) {
+                variants.add(variant.name());
+            }
+        }
+        return variants;
+    }
+
+    private void enqueue(QRCodeRef code, Blob blob, List<String> variants) throws InterruptedException {
+        QRCodeItem item = new QRCodeItem();
+        item.setQrCode(qrCodeRepository.getReferenceById(code.id()));
+        item.setUuid(code.uuid());
+        item.setFileName(blob.fileName());
+        item.setContentHash(blob.hash());
+        item.setVariants(String.join(",", variants));
+        item.setCreatedBy("system");
+        item.setUpdatedBy("system");
+        itemWriter.enqueue(item);
+        log.info("Queued QR code item {} for QR code {}", blob.fileName(), code.uuid());
+    }
 }
@@ -0,0 +1,293 @@
+package com.example.demo.camel;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.spi.IdempotentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches every enabled connection folder with one shared {@link WatchService} and hands new
+ * JPEGs to the folder's {@code direct:ingest-<id>} route. A file is dispatched once it has
+ * seen no create/modify events and kept the same size and modification time for
+ * {@code ingest.settleMillis}, which stands in for a close-write notification. A scan every
+ * {@code ingest.reconcileMillis} (and after an event overflow) catches anything the watcher
+ * missed; scanned files settle the same way. A dispatched file is recorded in the idempotent
+ * repository under path, size and modification time until its exchange completes, so a scan
+ * cannot hand it out a second time while it is in flight. The record is dropped once the route
+ * is done: a consumed file is gone from the folder, and one the route left in place (marked
+ * {@link #SKIPPED}, e.g. because no QR code is linked yet) is offered again by the next scan.
+ * The same file dropped in again later is therefore ingested again.
+ * <p>
+ * Dispatch never waits for ingest: files are sent asynchronously, and a file the route's pool
+ * has no room for is put back to settle and offered again later.
+ */
+@Component
+public class FolderWatcher {
+    public static final String INGEST_ENDPOINT = "direct:ingest-";
+    /** Exchange property set by an ingest route that did not consume the file. */
+    public static final String SKIPPED = "ingestSkipped";
+    private static final Logger log = LoggerFactory.getLogger(FolderWatcher.class);
+
+    private final ProducerTemplate producer;
+    private final IdempotentRepository dispatched;
+    private final long settleNanos;
+    private final Map<Path, Long> roots = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    // Files waiting to settle, with what they looked like when last seen. Filled by the
+    // watcher, the reconcile scan and rejected dispatches; drained by the watcher thread.
+    private final Map<Path, Candidate> settling = new ConcurrentHashMap<>();
+    // Roots whose existing files still have to be scanned by the watcher thread.
+    private final Queue<Path> pendingScans = new ConcurrentLinkedQueue<>();
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean overflowed;
+
+    public FolderWatcher(ProducerTemplate producer,
+                         IdempotentRepository dispatched,
+                         @Value("${ingest.settleMillis:500}") long settleMillis) {
+        this.producer = producer;
+        this.dispatched = dispatched;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        dispatched.start();
+        watchService = FileSystems.getDefault().newWatchService();
+        thread = Thread.ofPlatform().name("folder-watcher").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        thread.interrupt();
+        watchService.close();
+        dispatched.stop();
+    }
+
+    /**
+     * Starts watching {@code root} (recursively) for folder connection {@code folderId}. JPEGs
+     * already there are picked up by the watcher thread shortly after.
+     */
+    public void watch(Long folderId, Path root) {
+        Path dir = root.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(dir);
+            roots.put(dir, folderId);
+            registerTree(dir);
+            log.info("Watching {} for folder connection {}", dir, folderId);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to watch {} for folder connection {}", dir, folderId, e);
+            return;
+        }
+        pendingScans.add(dir);
+    }
+
+    public void unwatch(Long folderId) {
+        roots.values().removeIf(folderId::equals);
+        for (Iterator<Map.Entry<WatchKey, Path>> it = keys.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<WatchKey, Path> entry = it.next();
+            if (ownerOf(entry.getValue()) == null) {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+        log.info("Stopped watching folder connection {}", folderId);
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.reconcileMillis:60000}")
+    public void reconcile() {
+        for (Path root : roots.keySet()) {
+            try {
+                registerTree(root);
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to re-register {}", root, e);
+            }
+            scan(root);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long wait = settling.isEmpty() ? 1000 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(settleNanos));
+                WatchKey key = watchService.poll(wait, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handle(key);
+                }
+                for (Path dir; (dir = pendingScans.poll()) != null; ) {
+                    scan(dir);
+                }
+                dispatchSettled();
+                if (overflowed) {
+                    overflowed = false;
+                    reconcile();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private void handle(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(path);
+                } catch (IOException | UncheckedIOException e) {
+                    log.warn("Failed to watch new directory {}", path, e);
+                }
+                scan(path);
+            } else if (isJpeg(path)) {
+                settle(path);
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    private void settle(Path file) {
+        Candidate seen = Candidate.of(file, System.nanoTime());
+        if (seen != null) {
+            settling.put(file, seen);
+        }
+    }
+
+    private void dispatchSettled() {
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Candidate>> it = settling.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Candidate> entry = it.next();
+            if (now - entry.getValue().seenAt() < settleNanos) {
+                continue;
+            }
+            Candidate current = Candidate.of(entry.getKey(), now);
+            if (current == null) {
+                it.remove();
+            } else if (!current.sameContentAs(entry.getValue())) {
+                // Still being written, even if no event said so.
+                entry.setValue(current);
+            } else {
+                it.remove();
+                offer(entry.getKey(), current);
+            }
+        }
+    }
+
+    private void scan(Path dir) {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(FolderWatcher::isJpeg).filter(Files::isRegularFile).toList();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to scan {}", dir, e);
+            return;
+        }
+        files.forEach(file -> settling.computeIfAbsent(file, f -> Candidate.of(f, System.nanoTime())));
+    }
+
+    private void offer(Path file, Candidate candidate) {
+        Long folderId = ownerOf(file);
+        if (folderId == null) {
+            return;
+        }
+        String key = file + "|" + candidate.size() + "|" + candidate.modified();
+        if (!dispatched.add(key)) {
+            return;
+        }
+        producer.asyncSend(INGEST_ENDPOINT + folderId, exchange -> exchange.getIn().setBody(file.toFile()))
+                .whenComplete((exchange, error) -> {
+                    dispatched.remove(key);
+                    Throwable failure = error != null ? error : exchange.getException();
+                    if (failure == null) {
+                        if (exchange.getProperty(SKIPPED, false, Boolean.class)) {
+                            log.debug("Folder connection {} left {} in place", folderId, file);
+                        }
+                        return;
+                    }
+                    if (failure instanceof RejectedExecutionException) {
+                        log.debug("Ingest pool of folder connection {} is full, holding back {}", folderId, file);
+                        settle(file);
+                    } else {
+                        log.warn("Failed to dispatch {} to folder connection {}", file, folderId, failure);
+                    }
+                });
+    }
+
+    /** The folder connection whose root is the deepest one containing {@code path}. */
+    private Long ownerOf(Path path) {
+        Path best = null;
+        for (Path root : roots.keySet()) {
+            if (path.startsWith(root) && (best == null || root.getNameCount() > best.getNameCount())) {
+                best = root;
+            }
+        }
+        return best == null ? null : roots.get(best);
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                WatchKey key = d.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(key, d);
+            }
+        }
+    }
+
+    private static boolean isJpeg(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jpg");
+    }
+
+    private record Candidate(long seenAt, long size, long modified) {
+        /** Returns null if {@code file} is gone or not a regular file. */
+        static Candidate of(Path file, long seenAt) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                return attrs.isRegularFile() ? new Candidate(seenAt, attrs.size(), attrs.lastModifiedTime().toMillis()) : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        boolean sameContentAs(Candidate other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+}
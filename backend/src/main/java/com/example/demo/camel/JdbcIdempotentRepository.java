@@ -0,0 +1,110 @@
+package com.example.demo.camel;
+
+import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.support.service.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Idempotent repository shared by all ingest routes and kept in the {@code ingested_file}
+ * table. {@code FolderWatcher} only keeps keys of files that are in flight, so the table stays
+ * small; with the default in-memory datasource it starts empty after a restart, which simply
+ * lets leftover files be offered again. A bounded LRU of recently seen keys sits in front so
+ * reconciliation scans do not hit the database for every file. Rows older than
+ * {@code ingest.idempotentRetentionDays} are purged, which only matters for keys left behind
+ * by a crash on a persistent datasource.
+ */
+@Component
+public class JdbcIdempotentRepository extends ServiceSupport implements IdempotentRepository {
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotentRepository.class);
+    private static final String INSERT = "INSERT INTO ingested_file (file_key, created_at) VALUES (?, ?)";
+    private static final String EXISTS = "SELECT COUNT(*) FROM ingested_file WHERE file_key = ?";
+    private static final String DELETE = "DELETE FROM ingested_file WHERE file_key = ?";
+    private static final String PURGE = "DELETE FROM ingested_file WHERE created_at < ?";
+
+    private final JdbcTemplate jdbc;
+    private final Duration retention;
+    private final Set<String> known;
+
+    public JdbcIdempotentRepository(JdbcTemplate jdbc,
+                                    @Value("${ingest.idempotentCacheSize:10000}") int cacheSize,
+                                    @Value("${ingest.idempotentRetentionDays:30}") long retentionDays) {
+        this.jdbc = jdbc;
+        this.retention = Duration.ofDays(retentionDays);
+        this.known = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        }));
+    }
+
+    @Override
+    public boolean add(String key) {
+        if (known.contains(key)) {
+            return false;
+        }
+        try {
+            jdbc.update(INSERT, key, System.currentTimeMillis());
+            known.add(key);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            known.add(key);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        if (known.contains(key)) {
+            return true;
+        }
+        Integer count = jdbc.queryForObject(EXISTS, Integer.class, key);
+        if (count != null && count > 0) {
+            known.add(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        known.remove(key);
+        return jdbc.update(DELETE, key) > 0;
+    }
+
+    @Override
+    public boolean confirm(String key) {
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        known.clear();
+        jdbc.update("DELETE FROM ingested_file");
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.idempotentPurgeMillis:3600000}")
+    public void purge() {
+        try {
+            int purged = jdbc.update(PURGE, System.currentTimeMillis() - retention.toMillis());
+            if (purged > 0) {
+                log.info("Purged {} ingested file keys older than {}", purged, retention);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to purge ingested file keys", e);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.demo.camel;
 
-import com.example.demo.model.QRCode;
+import com.example.demo.imaging.ExifDateReader;
 import com.example.demo.model.QRCodeItem;
+import com.example.demo.model.QRCodeRef;
 import com.example.demo.repository.QRCodeRepository;
-import com.example.demo.repository.QRCodeItemRepository;
+import com.example.demo.service.QRCodeItemWriter;
+import com.example.demo.service.QRCodeDateIndex;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.file.GenericFile;
 import org.slf4j.Logger;
@@ -11,13 +13,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.Imaging;
-import org.apache.commons.imaging.common.ImageMetadata;
-import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
-import org.apache.commons.imaging.formats.tiff.TiffField;
-import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
-
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -26,23 +21,26 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 
 @Component
 public class JpgPollingRoute extends RouteBuilder {
 
     private static final Logger log = LoggerFactory.getLogger(JpgPollingRoute.class);
+    private static final ZoneId CAMERA_ZONE = ZoneId.of("MST", ZoneId.SHORT_IDS);
     private final QRCodeRepository repository;
-    private final QRCodeItemRepository itemRepository;
+    private final QRCodeItemWriter itemWriter;
+    private final QRCodeDateIndex dateIndex;
     private final String folderPath;
     private final String photoThumbnailFolderPath;
 
     public JpgPollingRoute(QRCodeRepository repository,
-                           QRCodeItemRepository itemRepository,
+                           QRCodeItemWriter itemWriter,
+                           QRCodeDateIndex dateIndex,
                            @Value("${polling_folder_path}") String folderPath,
                            @Value("${photo_folder_path}") String photoThumbnailFolderPath) {
         this.repository = repository;
-        this.itemRepository = itemRepository;
+        this.itemWriter = itemWriter;
+        this.dateIndex = dateIndex;
         this.folderPath = folderPath;
         this.photoThumbnailFolderPath = photoThumbnailFolderPath;
     }
@@ -58,24 +56,23 @@ public class JpgPollingRoute extends RouteBuilder {
                 File file = fileGeneric.getFile();
                 LocalDateTime creation = extractCreationDate(file);
                 if (creation != null) {
-                    QRCode code = repository
-                        .findTopByCreationDateLessThanEqualOrderByCreationDateDesc(creation);
+                    QRCodeRef code = dateIndex.floor(creation);
                     if (code == null) {
                         log.info("No QR codes found for creation date {}", creation);
                     }
                     else {
-                        log.info("Found {} / {} QR code for JP creation date {}", code.getCreatedAt(), code.getUuid(), creation);
+                        log.info("Found {} / {} QR code for JP creation date {}", code.createdAt(), code.uuid(), creation);
                         QRCodeItem item = new QRCodeItem();
-                        item.setQrCode(code);
-                        item.setUuid(code.getUuid());
+                        item.setQrCode(repository.getReferenceById(code.id()));
+                        item.setUuid(code.uuid());
                         item.setFileName(file.getName());
                         item.setExifCreatedAt(creation);
                         item.setCreatedBy("system");
                         item.setUpdatedBy("system");
-                        itemRepository.save(item);
-                        log.info("Saved QR code item {} for QR code {}", item.getFileName(), code.getUuid());
+                        itemWriter.enqueue(item);
+                        log.info("Queued QR code item {} for QR code {}", item.getFileName(), code.uuid());
 
-                        String fullDestinationFolderPath = photoThumbnailFolderPath + code.getUuid();
+                        String fullDestinationFolderPath = photoThumbnailFolderPath + code.uuid();
                         try {
                             Path destDir = Paths.get(fullDestinationFolderPath);
                             Files.createDirectories(destDir);
@@ -91,18 +88,12 @@ public class JpgPollingRoute extends RouteBuilder {
 
     private LocalDateTime extractCreationDate(File file) {
         try {
-            ImageMetadata metadata = Imaging.getMetadata(file);
-            if (metadata instanceof JpegImageMetadata jpegMeta) {
-                TiffField field = jpegMeta.findEXIFValueWithExactMatch(ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL);
-                if (field != null) {
-                    String value = field.getStringValue();
-                    log.info("Extracted creation date for {}: {}", file.getName(), value);
-                    DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
-                    LocalDateTime ldt = LocalDateTime.parse(value, fmt);
-                    return ldt.atZone(ZoneId.of("MST", ZoneId.SHORT_IDS)).toLocalDateTime();
-                }
+            LocalDateTime ldt = ExifDateReader.dateTimeOriginal(file.toPath());
+            if (ldt != null) {
+                log.info("Extracted creation date for {}: {}", file.getName(), ldt);
+                return ldt.atZone(CAMERA_ZONE).toLocalDateTime();
             }
-        } catch (ImageReadException | IOException e) {
+        } catch (IOException e) {
             log.warn("Failed to read metadata for {}", file.getName(), e);
         }
         return null;
@@ -2,12 +2,19 @@ package com.example.demo.controller;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
 
+import com.example.demo.imaging.DerivativeCache;
+import com.example.demo.imaging.DerivativePipeline;
 import com.example.demo.security.TokenVerifier;
 import com.example.demo.security.ReplayGuard;
+import com.example.demo.security.UrlSigner;
 import com.example.demo.storage.FileSystemStore;
-import com.example.demo.storage.FileSystemStore.InputStreamRange;
-import com.nimbusds.jwt.JWTClaimsSet;
+import com.example.demo.storage.FileSystemStore.FileRange;
+import com.example.demo.storage.FileSystemStore.StoredFile;
+import com.example.demo.storage.RangeNotSatisfiableException;
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
@@ -20,22 +27,36 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/img")
 public class ImageProxyController {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String CACHE_CONTROL = "private, max-age=120";
+
     private final TokenVerifier verifier;
     private final ReplayGuard replay;
+    private final UrlSigner urlSigner;
     private final FileSystemStore fs;
+    private final DerivativePipeline derivatives;
+    private final DerivativeCache derivativeCache;
 
     @Value("${security.requireScope:image:read}") String requiredScope;
     @Value("${security.jtiTtlSeconds:900}") long jtiTtl;
 
-    public ImageProxyController(TokenVerifier verifier, ReplayGuard replay, FileSystemStore fs) {
+    public ImageProxyController(TokenVerifier verifier, ReplayGuard replay, UrlSigner urlSigner, FileSystemStore fs,
+                                DerivativePipeline derivatives, DerivativeCache derivativeCache) {
         this.verifier = verifier;
         this.replay = replay;
+        this.urlSigner = urlSigner;
         this.fs = fs;
+        this.derivatives = derivatives;
+        this.derivativeCache = derivativeCache;
     }
 
     @GetMapping("/{galleryId}/{imageId}")
@@ -43,51 +64,138 @@ public class ImageProxyController {
             @PathVariable String galleryId,
             @PathVariable String imageId,
             @RequestParam(name = "token", required = false) String tokenQuery,
+            @RequestParam(name = "exp", required = false) Long exp,
+            @RequestParam(name = "pfx", required = false) String prefix,
+            @RequestParam(name = "scp", required = false) String scope,
+            @RequestParam(name = "sig", required = false) String sig,
+            @RequestParam(name = "variant", required = false) String variant,
+            @RequestParam(name = "w", required = false) Integer width,
+            @RequestParam(name = "q", defaultValue = "80") int quality,
             @RequestHeader(name = "Authorization", required = false) String authz,
-            @RequestHeader(name = "Range", required = false) String range) {
+            @RequestHeader(name = "Range", required = false) String range,
+            @RequestHeader(name = "If-Range", required = false) String ifRange,
+            ServletWebRequest webRequest) {
 
-        String token = extractToken(tokenQuery, authz);
-        JWTClaimsSet claims;
+        // A signed gallery grant (sig) is checked with one HMAC and has no jti; otherwise a
+        // per-image JWT is required.
+        String jti = null;
         try {
-            claims = verifier.verify(token, galleryId, imageId, requiredScope);
+            if (sig != null) {
+                urlSigner.verify(galleryId, imageId, exp, prefix, scope, sig, requiredScope);
+            } else {
+                jti = verifier.verify(extractToken(tokenQuery, authz), galleryId, imageId, requiredScope).getJWTID();
+            }
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        String jti = claims.getJWTID();
-        if (jti != null && !replay.recordJtiOnce(jti, Duration.ofSeconds(jtiTtl))) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (variant != null && !DerivativePipeline.FULL.equals(variant) && derivatives.find(variant).isEmpty()) {
+            return ResponseEntity.badRequest().build();
         }
 
-        InputStreamRange in;
+        // Validators come from the source file, so a revalidation never renders a derivative.
+        String sourceKey = keyFor(galleryId, width != null ? imageId : DerivativePipeline.variantFileName(imageId, variant));
+        StoredFile source;
         try {
-            in = fs.open(keyFor(galleryId, imageId), range);
+            source = fs.stat(sourceKey);
         } catch (IOException e) {
             return ResponseEntity.notFound().build();
         }
+        String etag = width == null ? source.etag() : derivativeEtag(source, width, quality);
 
-        long size = in.size();
-        long start = in.start();
-        long end = in.end();
+        // Validators are checked before the one-time jti is consumed so a client revalidating
+        // its cached copy with the same URL gets a 304 instead of a replay rejection.
+        webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (webRequest.checkNotModified(etag, source.lastModified())) {
+            return null;
+        }
+
+        if (jti != null && !replay.recordJtiOnce(jti, Duration.ofSeconds(jtiTtl))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
 
-        StreamingResponseBody body = os -> {
-            try (var input = in.in()) {
-                input.transferTo(os);
+        StoredFile file = source;
+        if (width != null) {
+            try {
+                file = fs.stat(derivativeCache.resolve(sourceKey, width, quality));
+            } catch (IOException e) {
+                return ResponseEntity.notFound().build();
             }
-        };
+        }
+
+        if (range != null && ifRange != null && !ifRangeMatches(ifRange, etag, source.lastModified(), webRequest)) {
+            range = null;
+        }
 
+        // Cache-Control, ETag and Last-Modified are already on the response from above.
         HttpHeaders h = new HttpHeaders();
-        h.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         h.set("Accept-Ranges", "bytes");
-        h.setCacheControl("private, max-age=120");
-        h.set("Content-Length", String.valueOf((end - start) + 1));
-        if (range != null) {
-            h.set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+
+        List<FileRange> ranges;
+        try {
+            ranges = fs.ranges(file, range);
+        } catch (RangeNotSatisfiableException e) {
+            h.set("Content-Range", "bytes */" + e.getSize());
+            return new ResponseEntity<>(h, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        if (ranges.size() > 1) {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            String partType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            h.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+            h.setContentLength(FileSystemStore.multipartLength(ranges, partType, boundary));
+            StreamingResponseBody body = os -> fs.transferMultipart(ranges, partType, boundary, os);
+            return new ResponseEntity<>(body, h, HttpStatus.PARTIAL_CONTENT);
+        }
+
+        FileRange part = ranges.isEmpty() ? file.whole() : ranges.get(0);
+        StreamingResponseBody body = sendfile(webRequest.getRequest(), part) ? null : os -> fs.transferTo(part, os);
+        h.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        h.setContentLength(part.length());
+        if (!ranges.isEmpty()) {
+            h.set("Content-Range", part.contentRange());
             return new ResponseEntity<>(body, h, HttpStatus.PARTIAL_CONTENT);
         }
         return new ResponseEntity<>(body, h, HttpStatus.OK);
     }
 
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified, ServletWebRequest webRequest) {
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            return webRequest.getRequest().getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Renders are derived deterministically from the source, so the source validator plus the
+     * requested width and quality identifies the derivative's bytes without rendering it.
+     */
+    private static String derivativeEtag(StoredFile source, int width, int quality) {
+        String etag = source.etag();
+        return etag.substring(0, etag.length() - 1) + "-w" + width + "-q" + quality + "\"";
+    }
+
+    /**
+     * Hands the file region to Tomcat's sendfile support when the connector offers it, so the
+     * kernel copies file pages straight to the socket once the handler returns.
+     */
+    private static boolean sendfile(HttpServletRequest request, FileRange range) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, range.path().toString());
+        request.setAttribute(SENDFILE_START, range.start());
+        request.setAttribute(SENDFILE_END, range.end() + 1);
+        return true;
+    }
+
     private static String keyFor(String gid, String imageId) {
         return gid + "/" + imageId;
     }
@@ -1,26 +1,46 @@
 package com.example.demo.controller;
 
+import java.nio.file.Files;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import com.example.demo.security.TokenIssuer;
+import com.example.demo.security.TokenIssuer.Grant;
+import com.example.demo.security.UrlSigner;
+import com.example.demo.storage.FileSystemStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nimbusds.jose.JOSEException;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/img")
 public class ImageTokenController {
     private final TokenIssuer issuer;
+    private final UrlSigner urlSigner;
+    private final ObjectMapper mapper;
+    private final FileSystemStore fs;
 
-    public ImageTokenController(TokenIssuer issuer) {
+    @Value("${security.tokenBatchMaxSize:1000}") int maxBatchSize;
+    @Value("${security.urlGrantTtlSeconds:3600}") long grantTtl;
+
+    public ImageTokenController(TokenIssuer issuer, UrlSigner urlSigner, ObjectMapper mapper, FileSystemStore fs) {
         this.issuer = issuer;
+        this.urlSigner = urlSigner;
+        this.mapper = mapper;
+        this.fs = fs;
     }
 
     @PostMapping("/{galleryId}/{imageId}/token")
@@ -29,17 +49,59 @@ public class ImageTokenController {
         return Map.of("token", token);
     }
 
+    /**
+     * Issues one signed grant for every image of the gallery, optionally narrowed to image ids
+     * starting with {@code prefix}. Clients append {@code query} to {@code /img/{galleryId}/{imageId}}.
+     */
+    @PostMapping("/{galleryId}/grant")
+    public ResponseEntity<Map<String, Object>> grant(@PathVariable String galleryId,
+                                                     @RequestParam(name = "prefix", required = false) String prefix) {
+        if (!galleryExists(galleryId)) {
+            return ResponseEntity.notFound().build();
+        }
+        UrlSigner.Grant grant = urlSigner.sign(galleryId, prefix, "image:read", Duration.ofSeconds(grantTtl));
+        return ResponseEntity.ok(Map.of("galleryId", galleryId, "exp", grant.exp(), "query", grant.query()));
+    }
+
+    private boolean galleryExists(String galleryId) {
+        try {
+            return Files.isDirectory(fs.resolve(galleryId));
+        } catch (SecurityException e) {
+            return false;
+        }
+    }
+
     public record TokenRequest(String galleryId, String imageId) {}
 
     public record TokenResponse(String galleryId, String imageId, String token) {}
 
+    /**
+     * Signs the batch in parallel and streams the JSON array back in request order. Every chunk
+     * is signed before the first byte goes out, so a signing failure surfaces as an error status
+     * instead of a truncated array.
+     */
     @PostMapping("/tokens")
-    public List<TokenResponse> tokens(@RequestBody List<TokenRequest> images) throws JOSEException {
-        List<TokenResponse> tokens = new ArrayList<>();
-        for (TokenRequest img : images) {
-            String token = issuer.issue("user", img.galleryId(), "image:read", img.imageId(), Duration.ofMinutes(5));
-            tokens.add(new TokenResponse(img.galleryId(), img.imageId(), token));
+    public ResponseEntity<StreamingResponseBody> tokens(@RequestBody List<TokenRequest> images) {
+        if (images.size() > maxBatchSize) {
+            return ResponseEntity.badRequest().build();
         }
-        return tokens;
+        List<Grant> grants = images.stream().map(img -> new Grant(img.galleryId(), img.imageId())).toList();
+        List<CompletableFuture<List<String>>> chunks = issuer.issueAll("user", "image:read", grants, Duration.ofMinutes(5));
+
+        StreamingResponseBody body = os -> {
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+            try (JsonGenerator gen = mapper.createGenerator(os)) {
+                gen.writeStartArray();
+                int i = 0;
+                for (CompletableFuture<List<String>> chunk : chunks) {
+                    for (String token : chunk.join()) {
+                        TokenRequest img = images.get(i++);
+                        gen.writeObject(new TokenResponse(img.galleryId(), img.imageId(), token));
+                    }
+                }
+                gen.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 }
@@ -6,17 +6,20 @@ import com.example.demo.repository.QRCodeItemRepository;
 import com.example.demo.repository.QRCodeRepository;
 import com.example.demo.service.QRCodeItemService;
 import com.example.demo.service.QRCodeService;
+import com.example.demo.storage.ContentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 
 @RestController
 @RequestMapping("/photos")
@@ -24,15 +27,18 @@ public class PhotoController {
     private final QRCodeItemService qrCodeItemService;
     private final QRCodeRepository qrCodeRepository;
     private final QRCodeItemRepository qrCodeItemRepository;
+    private final ContentStore contentStore;
     private static final Logger log = LoggerFactory.getLogger(PhotoController.class);
 
     @Value("${photo_folder_path}")
     private String photoFolderPath;
 
-    public PhotoController(QRCodeService qrCodeService, QRCodeItemService qrCodeItemService, QRCodeItemRepository qrCodeItemRepository, QRCodeRepository qrCodeRepository) {
+    public PhotoController(QRCodeService qrCodeService, QRCodeItemService qrCodeItemService, QRCodeItemRepository qrCodeItemRepository, QRCodeRepository qrCodeRepository,
+                           ContentStore contentStore) {
         this.qrCodeItemService = qrCodeItemService;
         this.qrCodeRepository = qrCodeRepository;
         this.qrCodeItemRepository = qrCodeItemRepository;
+        this.contentStore = contentStore;
     }
 
     @PostMapping("/{uuid}/")
@@ -44,15 +50,35 @@ public class PhotoController {
             throw new IllegalArgumentException("File must have a name");
         }
 
+        // The blob stays held until its item is saved, so a concurrent delete cannot release it.
+        try (InputStream in = file.getInputStream(); ContentStore.Blob blob = contentStore.store(in)) {
+            return upload(qrCode, uuid, originalFilename, blob);
+        }
+    }
+
+    private QRCodeItem upload(QRCode qrCode, String uuid, String originalFilename, ContentStore.Blob blob) throws IOException {
+        QRCodeItem existing = qrCodeItemRepository.findFirstByQrCodeIdAndContentHash(qrCode.getId(), blob.hash()).orElse(null);
+        if (existing != null) {
+            log.info("Photo {} is already in QR code {} as {}", originalFilename, uuid, existing.getFileName());
+            return existing;
+        }
         Path destDir = Paths.get(photoFolderPath + uuid);
         Files.createDirectories(destDir);
-        Path destFile = destDir.resolve(originalFilename);
-        Files.copy(file.getInputStream(), destFile, StandardCopyOption.REPLACE_EXISTING);
+        if (!ContentStore.link(blob.path(), destDir.resolve(blob.fileName()))) {
+            // Already in the gallery; its item may still be queued by the ingest writer.
+            existing = qrCodeItemRepository.findFirstByQrCodeIdAndContentHash(qrCode.getId(), blob.hash()).orElse(null);
+            if (existing != null) {
+                return existing;
+            }
+            log.info("Photo {} is already in QR code {} and its item is still being saved", originalFilename, uuid);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Photo is already being added to this QR code");
+        }
 
         QRCodeItem item = new QRCodeItem();
         item.setQrCode(qrCode);
         item.setUuid(uuid);
-        item.setFileName(originalFilename);
+        item.setFileName(blob.fileName());
+        item.setContentHash(blob.hash());
         item.setCreatedBy("system");
         item.setUpdatedBy("system");
         qrCodeItemRepository.save(item);
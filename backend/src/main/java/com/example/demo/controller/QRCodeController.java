@@ -1,18 +1,32 @@
 package com.example.demo.controller;
 
+import com.example.demo.imaging.QRCodeRenderer;
 import com.example.demo.model.QRCode;
+import com.example.demo.model.QRCodeRef;
+import com.example.demo.model.QRCodeSummary;
 import com.example.demo.service.QRCodeService;
 import com.example.demo.service.TokenService;
 import com.example.demo.service.UserService;
 import com.example.demo.model.rbac.User;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/qrcodes")
@@ -21,19 +35,24 @@ public class QRCodeController {
     private final QRCodeService service;
     private final TokenService tokenService;
     private final UserService userService;
+    private final QRCodeRenderer renderer;
     private static final Logger log = LoggerFactory.getLogger(QRCodeController.class);
 
-    public QRCodeController(QRCodeService service, TokenService tokenService, UserService userService) {
+    @Value("${qr.bulkMaxSize:1000}") int maxBulkSize;
+
+    public QRCodeController(QRCodeService service, TokenService tokenService, UserService userService,
+                            QRCodeRenderer renderer) {
         this.service = service;
         this.tokenService = tokenService;
         this.userService = userService;
+        this.renderer = renderer;
     }
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
-    public Page<QRCode> all(@RequestParam(defaultValue = "0") int page,
-                            @RequestParam(defaultValue = "10") int size,
-                            Authentication authentication) {
+    public Page<QRCodeSummary> all(@RequestParam(defaultValue = "0") int page,
+                                   @RequestParam(defaultValue = "10") int size,
+                                   Authentication authentication) {
         log.debug("Fetching QR codes page {} size {}", page, size);
         Pageable pageable = PageRequest.of(page, size);
         boolean isAdmin = authentication.getAuthorities().stream()
@@ -57,6 +76,47 @@ public class QRCodeController {
         return java.util.Map.of("token", tokenService.generateTempToken(uuid));
     }
 
+    /**
+     * The QR image for {@code uuid}, rendered from the uuid itself rather than read from the
+     * entity's blob. Renders never change for a given code, so they are cached as immutable
+     * under an ETag derived from the code's id and the parameters. The code is looked up first,
+     * so an unknown or deleted uuid is a 404 even for a client that still holds the image.
+     */
+    @GetMapping("/{uuid}/image")
+    public ResponseEntity<byte[]> image(@PathVariable String uuid,
+                                        @RequestParam(defaultValue = "200") int size,
+                                        @RequestParam(defaultValue = "png") String format,
+                                        ServletWebRequest webRequest) {
+        QRCodeRenderer.Format fmt;
+        try {
+            fmt = QRCodeRenderer.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (size < QRCodeRenderer.MIN_SIZE || size > QRCodeRenderer.MAX_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        QRCodeRef code = service.findRefByUuid(uuid).orElse(null);
+        if (code == null) {
+            return ResponseEntity.notFound().build();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        String etag = "\"qr" + QRCodeRenderer.VERSION + "-" + code.id() + "-" + size + "-"
+                + fmt.name().toLowerCase(Locale.ROOT) + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            return null;
+        }
+
+        byte[] image = renderer.render(uuid, size, fmt);
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .contentType(MediaType.parseMediaType(fmt.contentType()))
+                .body(image);
+    }
+
     @GetMapping("/{id}")
     public QRCode get(@PathVariable Long id) {
         log.debug("Fetching QR code {}", id);
@@ -74,6 +134,36 @@ public class QRCodeController {
         return service.save(qrCode);
     }
 
+    public record BulkRequest(int count, String description, QRCode.Type type) {}
+
+    /**
+     * Creates {@code count} codes, described as {@code "<description> 1"} onwards, in a single
+     * transaction, and returns their summaries once all of them are committed. A failure
+     * creates none of them and is answered with an error status.
+     */
+    @PostMapping("/bulk")
+    @PreAuthorize("hasAnyRole('ADMIN','USER')")
+    public ResponseEntity<List<QRCodeSummary>> createAll(@RequestBody BulkRequest request,
+                                                         Authentication authentication) {
+        if (request.count() < 1 || request.count() > maxBulkSize) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Creating {} QR codes with description {}", request.count(), request.description());
+        Long userId = Long.parseLong(authentication.getName());
+        User user = userService.findById(userId).orElseThrow();
+
+        List<QRCode> codes = new ArrayList<>(request.count());
+        for (int i = 0; i < request.count(); i++) {
+            QRCode qrCode = new QRCode();
+            qrCode.setDescription(request.description() == null ? null : request.description() + " " + (i + 1));
+            qrCode.setType(request.type());
+            qrCode.setCreatedBy(user.getUsername());
+            qrCode.setUser(user);
+            codes.add(qrCode);
+        }
+        return ResponseEntity.ok(service.saveAll(codes).stream().map(QRCodeSummary::of).toList());
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     public QRCode update(@PathVariable Long id, @RequestBody QRCode qrCode) {
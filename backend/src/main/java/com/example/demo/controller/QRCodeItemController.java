@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.model.QRCodeItem;
+import com.example.demo.service.CursorPage;
 import com.example.demo.service.QRCodeItemService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +33,7 @@ public class QRCodeItemController {
                                 @RequestParam(required = false) String uuid,
                                 @RequestParam(defaultValue = "createdAt") String sortBy) {
         log.debug("Fetching items for QR code {} uuid {} page {} size {} sort {}", qrCodeId, uuid, page, size, sortBy);
-        String sortField = "exifCreatedAt".equals(sortBy) ? "exifCreatedAt" : "createdAt";
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, sortField));
+        Pageable pageable = PageRequest.of(page, size, itemSort(sortBy));
         return service.findByQrCodeId(qrCodeId, uuid, pageable);
     }
 
@@ -50,11 +50,36 @@ public class QRCodeItemController {
         // if (!isPrivileged && !qrCodeUuid.equals(authentication.getName())) {
         //     throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
         // }
-        String sortField = "exifCreatedAt".equals(sortBy) ? "exifCreatedAt" : "createdAt";
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, sortField));
+        Pageable pageable = PageRequest.of(page, size, itemSort(sortBy));
         return service.findByQrCodeUuid(qrCodeUuid, uuid, pageable);
     }
 
+    @GetMapping("/qr/{qrCodeId}/scroll")
+    public CursorPage<QRCodeItem> scroll(@PathVariable Long qrCodeId,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "10") int size,
+                                         @RequestParam(defaultValue = "createdAt") String sortBy) {
+        log.debug("Scrolling items for QR code {} cursor {} size {} sort {}", qrCodeId, cursor, size, sortBy);
+        try {
+            return service.scrollByQrCodeId(qrCodeId, cursor, size, "exifCreatedAt".equals(sortBy));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/qr/uuid/{qrCodeUuid}/scroll")
+    public CursorPage<QRCodeItem> scrollByUuid(@PathVariable String qrCodeUuid,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "10") int size,
+                                               @RequestParam(defaultValue = "createdAt") String sortBy) {
+        log.debug("Scrolling items for QR code {} cursor {} size {} sort {}", qrCodeUuid, cursor, size, sortBy);
+        try {
+            return service.scrollByQrCodeUuid(qrCodeUuid, cursor, size, "exifCreatedAt".equals(sortBy));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
     public QRCodeItem get(@PathVariable Long id) {
         log.debug("Fetching QR code item {}", id);
@@ -89,4 +114,11 @@ public class QRCodeItemController {
         log.info("Deleting QR code item {}", uuid);
         service.deleteByUuid(uuid);
     }
+
+    // Every item on a page shares its code, so leading with it changes nothing but lets the
+    // (qr_code_id, time DESC) index supply the order.
+    private static Sort itemSort(String sortBy) {
+        String sortField = "exifCreatedAt".equals(sortBy) ? "exifCreatedAt" : "createdAt";
+        return Sort.by(Sort.Order.asc("qrCode.id"), Sort.Order.desc(sortField));
+    }
 }
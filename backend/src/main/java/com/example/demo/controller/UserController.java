@@ -1,7 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.model.rbac.User;
-import com.example.demo.model.QRCode;
+import com.example.demo.model.QRCodeSummary;
 import com.example.demo.service.UserService;
 import com.example.demo.service.TotpService;
 import com.example.demo.service.QRCodeService;
@@ -63,9 +63,9 @@ public class UserController {
 
     @GetMapping("/{id}/qrcodes")
     @PreAuthorize("hasRole('ADMIN')")
-    public Page<QRCode> qrCodes(@PathVariable Long id,
-                                @RequestParam(defaultValue = "0") int page,
-                                @RequestParam(defaultValue = "10") int size) {
+    public Page<QRCodeSummary> qrCodes(@PathVariable Long id,
+                                       @RequestParam(defaultValue = "0") int page,
+                                       @RequestParam(defaultValue = "10") int size) {
         log.debug("Fetching QR codes for user {} page {} size {}", id, page, size);
         Pageable pageable = PageRequest.of(page, size);
         return qrCodeService.findAllByUserId(id, pageable);
@@ -0,0 +1,239 @@
+package com.example.demo.imaging;
+
+import com.example.demo.storage.FileSystemStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Renders width/quality variants on first request and keeps them under
+ * {@code <storage.root>/.cache}, evicting least recently used files once the cache grows
+ * past {@code derivatives.cacheMaxBytes}. Concurrent misses for the same variant share a
+ * single render. A hit is only served while its source still exists, and every entry handed
+ * out is leased for {@link #LEASE_NANOS} so eviction cannot delete it while it is being sent.
+ */
+@Component
+public class DerivativeCache {
+    public static final String CACHE_DIR = ".cache";
+    private static final int MIN_WIDTH = 16;
+    private static final int WIDTH_STEP = 16;
+    private static final int QUALITY_STEP = 5;
+    private static final long LEASE_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final Logger log = LoggerFactory.getLogger(DerivativeCache.class);
+
+    private final FileSystemStore fs;
+    private final ThumbnailEngine engine;
+    private final long maxBytes;
+    private final int maxWidth;
+    private final Map<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<String>> rendering = new ConcurrentHashMap<>();
+    // Keys handed out recently, to the nanoTime their lease ends. Guarded by this.
+    private final Map<String, Long> leases = new HashMap<>();
+    private long totalBytes;
+
+    public DerivativeCache(FileSystemStore fs,
+                           ThumbnailEngine engine,
+                           @Value("${derivatives.cacheMaxBytes:1073741824}") long maxBytes,
+                           @Value("${derivatives.maxWidth:4096}") int maxWidth) {
+        this.fs = fs;
+        this.engine = engine;
+        this.maxBytes = maxBytes;
+        this.maxWidth = maxWidth;
+    }
+
+    @PostConstruct
+    public void load() {
+        Path dir = fs.resolve(CACHE_DIR);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            List<Path> cached = files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(DerivativeCache::lastModified))
+                    .toList();
+            synchronized (this) {
+                for (Path file : cached) {
+                    long bytes = Files.size(file);
+                    entries.put(fs.keyOf(file), bytes);
+                    totalBytes += bytes;
+                }
+                evict();
+            }
+            log.info("Loaded {} cached derivatives ({} bytes)", entries.size(), totalBytes);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to scan derivative cache {}", dir, e);
+        }
+    }
+
+    /**
+     * Returns the store key of {@code sourceKey} rendered at {@code width} pixels and JPEG
+     * {@code quality} (1-100), rendering it first if it is not cached yet. Width is clamped to
+     * {@code derivatives.maxWidth} and both values are rounded to coarse steps so arbitrary
+     * client input cannot fan out into unbounded cache entries.
+     *
+     * @throws NoSuchFileException if the source no longer exists, even if a render is cached
+     */
+    public String resolve(String sourceKey, int width, int quality) throws IOException {
+        int w = roundUp(Math.max(MIN_WIDTH, Math.min(width, maxWidth)), WIDTH_STEP);
+        int q = roundUp(Math.max(QUALITY_STEP, Math.min(quality, 100)), QUALITY_STEP);
+        String key = cacheKey(sourceKey, w, q);
+        if (!Files.isRegularFile(fs.resolve(sourceKey))) {
+            purge(sourceKey);
+            throw new NoSuchFileException(sourceKey);
+        }
+        synchronized (this) {
+            if (entries.get(key) != null) {
+                lease(key);
+                return key;
+            }
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = rendering.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            render(fs.resolve(sourceKey), fs.resolve(key), w, q);
+            mine.complete(key);
+            return key;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(key, mine);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Drops every cached render of {@code sourceKey}, e.g. once the photo has been deleted. */
+    public void purge(String sourceKey) {
+        String prefix = cacheKey(sourceKey, 0, 0);
+        prefix = prefix.substring(0, prefix.lastIndexOf("-w") + 2);
+        List<String> purged = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> entry = it.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    it.remove();
+                    totalBytes -= entry.getValue();
+                    leases.remove(entry.getKey());
+                    purged.add(entry.getKey());
+                }
+            }
+        }
+        for (String key : purged) {
+            delete(key);
+        }
+        if (!purged.isEmpty()) {
+            log.debug("Purged {} cached derivatives of {}", purged.size(), sourceKey);
+        }
+    }
+
+    private void render(Path source, Path target, int width, int quality) throws IOException {
+        if (!Files.isRegularFile(source)) {
+            throw new NoSuchFileException(source.toString());
+        }
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "render", ".tmp");
+        try {
+            engine.write(ThumbnailEngine.scale(engine.decode(source, width), width), tmp, quality / 100f);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        long bytes = Files.size(target);
+        String key = fs.keyOf(target);
+        synchronized (this) {
+            Long previous = entries.put(key, bytes);
+            totalBytes += bytes - (previous == null ? 0 : previous);
+            lease(key);
+            evict();
+        }
+        log.debug("Rendered derivative {} ({} bytes)", key, bytes);
+    }
+
+    private void lease(String key) {
+        leases.put(key, System.nanoTime() + LEASE_NANOS);
+    }
+
+    // Called with the monitor held.
+    private void evict() {
+        long now = System.nanoTime();
+        leases.values().removeIf(until -> until - now <= 0);
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (leases.containsKey(eldest.getKey())) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue();
+            delete(eldest.getKey());
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(fs.resolve(key));
+        } catch (IOException e) {
+            log.warn("Failed to evict cached derivative {}", key, e);
+        }
+    }
+
+    private static String cacheKey(String sourceKey, int width, int quality) {
+        int dot = sourceKey.lastIndexOf('.');
+        String base = dot < 0 ? sourceKey : sourceKey.substring(0, dot);
+        return CACHE_DIR + "/" + base + "-w" + width + "-q" + quality + ".jpg";
+    }
+
+    private static int roundUp(int value, int step) {
+        return (value + step - 1) / step * step;
+    }
+
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for derivative", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Derivative render failed", e.getCause());
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.imaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Produces the configured set of downscaled variants ({@code derivatives.sizes}, e.g.
+ * {@code thumb:200,medium:1280}) from a single subsampled decode of the original. Variants
+ * are rendered largest first so each one is scaled from the previous, not from the source.
+ */
+@Component
+public class DerivativePipeline {
+    public static final String FULL = "full";
+    private static final Logger log = LoggerFactory.getLogger(DerivativePipeline.class);
+
+    private final ThumbnailEngine engine;
+    private final List<Variant> variants;
+
+    public DerivativePipeline(ThumbnailEngine engine,
+                              @Value("${derivatives.sizes:thumb:200,medium:1280}") String sizes) {
+        this.engine = engine;
+        this.variants = parse(sizes);
+    }
+
+    public List<Variant> variants() {
+        return variants;
+    }
+
+    public Optional<Variant> find(String name) {
+        return variants.stream().filter(v -> v.name().equals(name)).findFirst();
+    }
+
+    /**
+     * Writes every variant of {@code source} into {@code targetDir} as
+     * {@code <baseName>-<variant>.jpg} and returns the names of the variants written.
+     */
+    public List<String> generate(Path source, Path targetDir, String baseName) throws IOException {
+        if (variants.isEmpty()) {
+            return List.of();
+        }
+        BufferedImage current = engine.decode(source, variants.get(0).width());
+        List<String> written = new ArrayList<>();
+        for (Variant variant : variants) {
+            current = ThumbnailEngine.scale(current, variant.width());
+            Path target = targetDir.resolve(fileName(baseName, variant.name()));
+            engine.write(current, target);
+            written.add(variant.name());
+            log.debug("Wrote {} variant {}", variant.name(), target);
+        }
+        return written;
+    }
+
+    /**
+     * Maps an original image file name such as {@code abc.jpg} to the file holding the
+     * given variant, {@code abc-thumb.jpg}. {@code full} maps to the original itself.
+     */
+    public static String variantFileName(String imageFileName, String variant) {
+        if (variant == null || FULL.equals(variant)) {
+            return imageFileName;
+        }
+        int dot = imageFileName.lastIndexOf('.');
+        String base = dot < 0 ? imageFileName : imageFileName.substring(0, dot);
+        return fileName(base, variant);
+    }
+
+    private static String fileName(String baseName, String variant) {
+        return baseName + "-" + variant + ".jpg";
+    }
+
+    private static List<Variant> parse(String sizes) {
+        List<Variant> parsed = new ArrayList<>();
+        for (String entry : sizes.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2 || FULL.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid derivative size: " + entry);
+            }
+            parsed.add(new Variant(parts[0], Integer.parseInt(parts[1])));
+        }
+        parsed.sort(Comparator.comparingInt(Variant::width).reversed());
+        return List.copyOf(parsed);
+    }
+
+    public record Variant(String name, int width) {}
+}
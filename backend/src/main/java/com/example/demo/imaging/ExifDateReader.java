@@ -0,0 +1,199 @@
+package com.example.demo.imaging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads the EXIF {@code DateTimeOriginal} tag straight from a JPEG's APP1 segment. The file is
+ * streamed marker by marker and the segment is only read as far as the IFD walk needs, so
+ * typically just the first few KB are touched and embedded thumbnails are never loaded.
+ */
+public final class ExifDateReader {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int APP1 = 0xE1;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TYPE_ASCII = 2;
+    private static final int MAX_ENTRIES = 1024;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private ExifDateReader() {
+    }
+
+    /**
+     * Returns the original capture time, or {@code null} if the file is not a JPEG or has no
+     * usable {@code DateTimeOriginal}.
+     */
+    public static LocalDateTime dateTimeOriginal(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 4096))) {
+            if (in.readUnsignedByte() != 0xFF || in.readUnsignedByte() != SOI) {
+                return null;
+            }
+            while (true) {
+                if (in.readUnsignedByte() != 0xFF) {
+                    return null;
+                }
+                int marker = in.readUnsignedByte();
+                while (marker == 0xFF) {
+                    marker = in.readUnsignedByte();
+                }
+                if (marker == SOS || marker == EOI) {
+                    return null;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return null;
+                }
+                if (marker == APP1) {
+                    Segment segment = new Segment(in, length);
+                    if (segment.isExif()) {
+                        return parse(segment.dateTimeOriginal());
+                    }
+                    segment.skipRest();
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value, FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An APP1 segment read lazily: bytes are pulled from the stream only up to the furthest
+     * offset asked for. TIFF offsets are relative to {@link #TIFF}.
+     */
+    private static final class Segment {
+        private static final int TIFF = EXIF_HEADER.length;
+
+        private final DataInputStream in;
+        private final byte[] data;
+        private int filled;
+        private boolean littleEndian;
+
+        Segment(DataInputStream in, int length) {
+            this.in = in;
+            this.data = new byte[length];
+        }
+
+        boolean isExif() throws IOException {
+            if (!ensure(TIFF)) {
+                return false;
+            }
+            for (int i = 0; i < TIFF; i++) {
+                if (data[i] != EXIF_HEADER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void skipRest() throws IOException {
+            in.skipNBytes(data.length - filled);
+        }
+
+        String dateTimeOriginal() throws IOException {
+            if (!ensure(TIFF + 8)) {
+                return null;
+            }
+            if (data[TIFF] == 'I' && data[TIFF + 1] == 'I') {
+                littleEndian = true;
+            } else if (data[TIFF] != 'M' || data[TIFF + 1] != 'M') {
+                return null;
+            }
+            if (u16(TIFF + 2) != 42) {
+                return null;
+            }
+
+            long exifIfd = value(find(u32(TIFF + 4), TAG_EXIF_IFD));
+            int entry = exifIfd < 0 ? -1 : find(exifIfd, TAG_DATE_TIME_ORIGINAL);
+            if (entry < 0 || u16(entry + 2) != TYPE_ASCII) {
+                return null;
+            }
+            long count = u32(entry + 4);
+            long offset = count <= 4 ? entry + 8 - TIFF : u32(entry + 8);
+            if (count > 64 || !ensure(TIFF + offset + count)) {
+                return null;
+            }
+            int start = (int) (TIFF + offset);
+            int end = start;
+            while (end < start + count && data[end] != 0) {
+                end++;
+            }
+            return new String(data, start, end - start, StandardCharsets.US_ASCII).trim();
+        }
+
+        /** Returns the position of {@code tag} in the IFD at {@code ifd}, or -1. */
+        private int find(long ifd, int tag) throws IOException {
+            if (!ensure(TIFF + ifd + 2)) {
+                return -1;
+            }
+            int pos = (int) (TIFF + ifd);
+            int entries = u16(pos);
+            if (entries > MAX_ENTRIES) {
+                return -1;
+            }
+            for (int i = 0; i < entries; i++) {
+                int entry = pos + 2 + i * 12;
+                if (!ensure(entry + 12)) {
+                    return -1;
+                }
+                // The spec wants entries sorted by tag, but plenty of writers ignore that, so
+                // the whole directory is scanned.
+                if (u16(entry) == tag) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        private long value(int entry) {
+            return entry < 0 ? -1 : u32(entry + 8);
+        }
+
+        private boolean ensure(long end) throws IOException {
+            if (end > data.length) {
+                return false;
+            }
+            if (end > filled) {
+                in.readFully(data, filled, (int) end - filled);
+                filled = (int) end;
+            }
+            return true;
+        }
+
+        private int u16(int pos) {
+            int a = data[pos] & 0xFF;
+            int b = data[pos + 1] & 0xFF;
+            return littleEndian ? b << 8 | a : a << 8 | b;
+        }
+
+        private long u32(int pos) {
+            long hi = u16(littleEndian ? pos + 2 : pos);
+            long lo = u16(littleEndian ? pos : pos + 2);
+            return hi << 16 | lo;
+        }
+    }
+}
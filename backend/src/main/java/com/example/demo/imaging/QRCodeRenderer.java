@@ -0,0 +1,111 @@
+package com.example.demo.imaging;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Renders the QR image for a code's uuid as PNG or SVG at a requested size, keeping the most
+ * recently used renders in memory. The output depends only on uuid, size and format, which is
+ * what lets callers hand out a fixed ETag and cache it forever.
+ */
+@Component
+public class QRCodeRenderer {
+    /** Bump whenever rendering changes so previously cached images are revalidated. */
+    public static final int VERSION = 1;
+    public static final int MIN_SIZE = 64;
+    public static final int MAX_SIZE = 2048;
+    // Matches MultiFormatWriter's defaults, so a 200px PNG equals the blob stored on the entity.
+    private static final int QUIET_ZONE = 4;
+
+    private final Map<String, byte[]> renders;
+
+    public QRCodeRenderer(@Value("${qr.imageCacheSize:1024}") int cacheSize) {
+        this.renders = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /** {@code size} is expected to lie within [{@link #MIN_SIZE}, {@link #MAX_SIZE}]. */
+    public byte[] render(String uuid, int size, Format format) {
+        String key = uuid + "|" + size + "|" + format;
+        byte[] image = renders.get(key);
+        if (image == null) {
+            image = format == Format.SVG ? svg(uuid, size) : png(uuid, size);
+            renders.put(key, image);
+        }
+        return image;
+    }
+
+    /** Renders a PNG without consulting or filling the cache, for one-off renders. */
+    public static byte[] png(String uuid, int size) {
+        try {
+            BitMatrix matrix = new MultiFormatWriter().encode(uuid, BarcodeFormat.QR_CODE, size, size);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MatrixToImageWriter.writeToStream(matrix, "PNG", out);
+            return out.toByteArray();
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Cannot encode QR code " + uuid, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // One module per user unit and a single path, so the SVG stays small and scales losslessly.
+    private static byte[] svg(String uuid, int size) {
+        ByteMatrix modules;
+        try {
+            modules = Encoder.encode(uuid, ErrorCorrectionLevel.L).getMatrix();
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Cannot encode QR code " + uuid, e);
+        }
+        int extent = modules.getWidth() + 2 * QUIET_ZONE;
+        StringBuilder svg = new StringBuilder(8192)
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(size)
+                .append("\" height=\"").append(size)
+                .append("\" viewBox=\"0 0 ").append(extent).append(' ').append(extent)
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path d=\"");
+        for (int y = 0; y < modules.getHeight(); y++) {
+            for (int x = 0; x < modules.getWidth(); x++) {
+                if (modules.get(x, y) == 1) {
+                    svg.append('M').append(x + QUIET_ZONE).append(' ').append(y + QUIET_ZONE).append("h1v1h-1z");
+                }
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public enum Format {
+        PNG("image/png"),
+        SVG("image/svg+xml");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+}
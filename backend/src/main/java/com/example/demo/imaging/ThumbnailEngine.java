@@ -0,0 +1,160 @@
+package com.example.demo.imaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Decodes JPEGs straight to roughly the requested size using source subsampling, so a
+ * 24MP original never has to be fully materialised on the heap. Readers and writers are
+ * pooled because their native state is expensive to set up per file.
+ */
+@Component
+public class ThumbnailEngine {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailEngine.class);
+
+    private final long maxDecodePixels;
+    private final float quality;
+    private final BlockingQueue<ImageReader> readers;
+    private final BlockingQueue<ImageWriter> writers;
+
+    public ThumbnailEngine(@Value("${thumbnail.maxDecodePixels:4000000}") long maxDecodePixels,
+                           @Value("${thumbnail.quality:0.8}") float quality,
+                           @Value("${thumbnail.poolSize:8}") int poolSize) {
+        this.maxDecodePixels = maxDecodePixels;
+        this.quality = quality;
+        this.readers = new ArrayBlockingQueue<>(poolSize);
+        this.writers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Decodes {@code source} at the coarsest subsampling that still yields at least
+     * {@code targetWidth} pixels across, further coarsened if needed to stay under
+     * {@code thumbnail.maxDecodePixels}.
+     */
+    public BufferedImage decode(Path source, int targetWidth) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                throw new IOException("Cannot open image " + source);
+            }
+            ImageReader reader = borrowReader(in);
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = subsampling(width, height, targetWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                log.debug("Decoding {} ({}x{}) with subsampling {}", source.getFileName(), width, height, step);
+                return reader.read(0, param);
+            } finally {
+                release(reader);
+            }
+        }
+    }
+
+    public void write(BufferedImage image, Path target) throws IOException {
+        write(image, target, quality);
+    }
+
+    public void write(BufferedImage image, Path target, float quality) throws IOException {
+        ImageWriter writer = borrowWriter();
+        try (OutputStream os = Files.newOutputStream(target);
+             ImageOutputStream out = new MemoryCacheImageOutputStream(os)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+            if (!writers.offer(writer)) {
+                writer.dispose();
+            }
+        }
+    }
+
+    public static BufferedImage scale(BufferedImage source, int width) {
+        if (source.getWidth() <= width && source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) ((double) targetWidth / source.getWidth() * source.getHeight()));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private int subsampling(int width, int height, int targetWidth) {
+        int step = Math.max(1, width / Math.max(1, targetWidth));
+        while (step < width && decodedPixels(width, height, step) > maxDecodePixels) {
+            step++;
+        }
+        return step;
+    }
+
+    private static long decodedPixels(int width, int height, int step) {
+        long w = (width + step - 1) / step;
+        long h = (height + step - 1) / step;
+        return w * h;
+    }
+
+    private ImageReader borrowReader(ImageInputStream in) throws IOException {
+        ImageReader reader = readers.poll();
+        if (reader != null && reader.getOriginatingProvider().canDecodeInput(in)) {
+            return reader;
+        }
+        if (reader != null && !readers.offer(reader)) {
+            reader.dispose();
+        }
+        Iterator<ImageReader> it = ImageIO.getImageReaders(in);
+        if (!it.hasNext()) {
+            throw new IOException("No image reader for input");
+        }
+        return it.next();
+    }
+
+    private void release(ImageReader reader) {
+        reader.reset();
+        if (!"JPEG".equalsIgnoreCase(formatOf(reader)) || !readers.offer(reader)) {
+            reader.dispose();
+        }
+    }
+
+    private ImageWriter borrowWriter() {
+        ImageWriter writer = writers.poll();
+        return writer != null ? writer : ImageIO.getImageWritersByFormatName("jpeg").next();
+    }
+
+    private static String formatOf(ImageReader reader) {
+        try {
+            return reader.getFormatName();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
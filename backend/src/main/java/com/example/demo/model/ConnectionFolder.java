@@ -6,7 +6,8 @@ import jakarta.persistence.*;
 @Table(name = "connection_folder")
 public class ConnectionFolder {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "connection_folder_seq")
+    @SequenceGenerator(name = "connection_folder_seq", sequenceName = "connection_folder_seq", allocationSize = 50)
     private Long id;
 
     private String name;
@@ -0,0 +1,35 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+
+/**
+ * A file currently handed to an ingest route, keyed by path, size and modification time.
+ * Rows are written with plain JDBC by {@code JdbcIdempotentRepository}; the entity only
+ * exists so the schema is managed with the rest.
+ */
+@Entity
+@Table(name = "ingested_file", indexes = @Index(name = "idx_ingested_file_created_at", columnList = "created_at"))
+public class IngestedFile {
+    @Id
+    @Column(name = "file_key", length = 1024)
+    private String fileKey;
+
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    public void setFileKey(String fileKey) {
+        this.fileKey = fileKey;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
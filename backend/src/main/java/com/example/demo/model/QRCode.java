@@ -1,9 +1,7 @@
 package com.example.demo.model;
 
 import jakarta.persistence.*;
-import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -13,19 +11,23 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonBackReference;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
+import com.example.demo.imaging.QRCodeRenderer;
 import com.example.demo.model.rbac.User;
 
 @Entity
-@Table(name = "qr_codes")
+@Table(name = "qr_codes", indexes = {
+        @Index(name = "idx_qr_codes_uuid", columnList = "uuid", unique = true),
+        @Index(name = "idx_qr_codes_created_at", columnList = "created_at DESC"),
+        @Index(name = "idx_qr_codes_user_id", columnList = "user_id")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class QRCode {
+    public static final int BLOB_SIZE = 200;
+
+    // Sequence ids so bulk creation can batch its inserts, as for QRCodeItem.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "qr_codes_seq")
+    @SequenceGenerator(name = "qr_codes_seq", sequenceName = "qr_codes_seq", allocationSize = 50)
     private Long id;
 
     private String uuid;
@@ -60,7 +62,8 @@ public class QRCode {
     @JoinTable(
         name = "qr_code_connection_folder",
         joinColumns = @JoinColumn(name = "qr_code_id"),
-        inverseJoinColumns = @JoinColumn(name = "connection_folder_id")
+        inverseJoinColumns = @JoinColumn(name = "connection_folder_id"),
+        indexes = @Index(name = "idx_qr_code_connection_folder_folder", columnList = "connection_folder_id")
     )
     private Set<ConnectionFolder> connectionFolders = new HashSet<>();
 
@@ -186,15 +189,7 @@ public class QRCode {
     }
 
     private byte[] generateBlob(String data) {
-        try {
-            BitMatrix matrix = new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, 200, 200);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(matrix, "PNG", out);
-            return out.toByteArray();
-        } catch (WriterException | IOException e) {
-            log.error("Failed to generate QR code", e);
-            throw new RuntimeException("Failed to generate QR code", e);
-        }
+        return QRCodeRenderer.png(data, BLOB_SIZE);
     }
 
     public enum Type {
@@ -8,10 +8,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Entity
-@Table(name = "qr_code_items")
+@Table(name = "qr_code_items", indexes = {
+        @Index(name = "idx_qr_code_items_code_created", columnList = "qr_code_id, created_at DESC, id DESC"),
+        @Index(name = "idx_qr_code_items_code_exif", columnList = "qr_code_id, exif_created_at DESC"),
+        @Index(name = "idx_qr_code_items_code_sort", columnList = "qr_code_id, sort_at DESC, id DESC"),
+        @Index(name = "idx_qr_code_items_uuid", columnList = "uuid"),
+        @Index(name = "idx_qr_code_items_content_hash", columnList = "content_hash")
+})
 public class QRCodeItem {
+    // Sequence ids (allocated in blocks, see hibernate.id.optimizer.pooled.preferred) let
+    // Hibernate batch inserts, which IDENTITY columns rule out.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "qr_code_items_seq")
+    @SequenceGenerator(name = "qr_code_items_seq", sequenceName = "qr_code_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -21,9 +30,16 @@ public class QRCodeItem {
 
     private String uuid;
     private String fileName;
+    private String variants;
+    // SHA-256 of the photo in the content store; null for files stored before deduplication.
+    private String contentHash;
     private String createdBy;
     private LocalDateTime createdAt;
     private LocalDateTime exifCreatedAt;
+    // Capture time, or createdAt when there is none; kept as a column so gallery pages sorted by
+    // capture time can seek on an index instead of sorting COALESCE(...) over the whole gallery.
+    @JsonIgnore
+    private LocalDateTime sortAt;
     private String updatedBy;
     private LocalDateTime updatedAt;
 
@@ -36,12 +52,14 @@ public class QRCodeItem {
         }
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        sortAt = exifCreatedAt != null ? exifCreatedAt : createdAt;
         log.debug("Persisting QR code item {}", uuid);
     }
 
     @PreUpdate
     public void preUpdate() {
         updatedAt = LocalDateTime.now();
+        sortAt = exifCreatedAt != null ? exifCreatedAt : createdAt;
     }
 
     public Long getId() { return id; }
@@ -56,6 +74,12 @@ public class QRCodeItem {
     public String getFileName() { return fileName; }
     public void setFileName(String fileName) { this.fileName = fileName; }
 
+    public String getVariants() { return variants; }
+    public void setVariants(String variants) { this.variants = variants; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
     public String getCreatedBy() { return createdBy; }
     public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
 
@@ -65,6 +89,7 @@ public class QRCodeItem {
     public LocalDateTime getExifCreatedAt() { return exifCreatedAt; }
     public void setExifCreatedAt(LocalDateTime exifCreatedAt) { this.exifCreatedAt = exifCreatedAt; }
 
+    public LocalDateTime getSortAt() { return sortAt; }
     public String getUpdatedBy() { return updatedBy; }
     public void setUpdatedBy(String updatedBy) { this.updatedBy = updatedBy; }
 
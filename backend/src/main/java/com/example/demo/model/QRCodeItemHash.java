@@ -0,0 +1,7 @@
+package com.example.demo.model;
+
+/**
+ * The QR code and content hash of a stored item, without loading the entity.
+ */
+public record QRCodeItemHash(Long qrCodeId, String contentHash) {
+}
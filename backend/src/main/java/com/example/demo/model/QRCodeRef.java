@@ -0,0 +1,12 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Identity and creation time of a QR code, without loading the entity or its blob.
+ */
+public record QRCodeRef(Long id, String uuid, LocalDateTime createdAt) {
+    public static QRCodeRef of(QRCode code) {
+        return new QRCodeRef(code.getId(), code.getUuid(), code.getCreatedAt());
+    }
+}
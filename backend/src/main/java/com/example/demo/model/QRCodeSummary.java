@@ -0,0 +1,16 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * List view of a QR code: its scalar columns only, without the PNG blob or connection sets.
+ * The image itself is served from {@code /qrcodes/{uuid}/image}.
+ */
+public record QRCodeSummary(Long id, String uuid, String description, QRCode.Type type,
+                            String createdBy, LocalDateTime createdAt,
+                            String updatedBy, LocalDateTime updatedAt) {
+    public static QRCodeSummary of(QRCode code) {
+        return new QRCodeSummary(code.getId(), code.getUuid(), code.getDescription(), code.getType(),
+                code.getCreatedBy(), code.getCreatedAt(), code.getUpdatedBy(), code.getUpdatedAt());
+    }
+}
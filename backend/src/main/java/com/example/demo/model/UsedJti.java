@@ -0,0 +1,34 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Token id claimed through the shared replay store. Rows are written with plain JDBC by
+ * {@code JdbcReplayStore}; the entity only exists so the schema is managed with the rest.
+ */
+@Entity
+@Table(name = "used_jti", indexes = @Index(name = "idx_used_jti_expires_at", columnList = "expires_at"))
+public class UsedJti {
+    @Id
+    @Column(length = 128)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    public String getJti() {
+        return jti;
+    }
+
+    public void setJti(String jti) {
+        this.jti = jti;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -1,17 +1,49 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.QRCodeItem;
+import com.example.demo.model.QRCodeItemHash;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface QRCodeItemRepository extends JpaRepository<QRCodeItem, Long> {
     Optional<QRCodeItem> findByUuid(String uuid);
-    void deleteByUuid(String uuid);
+    List<QRCodeItem> deleteByUuid(String uuid);
+    long countByContentHash(String contentHash);
+    Optional<QRCodeItem> findFirstByQrCodeIdAndContentHash(Long qrCodeId, String contentHash);
+    @Query("SELECT new com.example.demo.model.QRCodeItemHash(i.qrCode.id, i.contentHash) FROM QRCodeItem i " +
+           "WHERE i.contentHash IS NOT NULL")
+    List<QRCodeItemHash> findAllContentHashes();
     Page<QRCodeItem> findByQrCodeId(Long qrCodeId, Pageable pageable);
     Page<QRCodeItem> findByQrCodeIdAndUuidContainingIgnoreCase(Long qrCodeId, String uuid, Pageable pageable);
     Page<QRCodeItem> findByQrCodeUuid(String qrCodeUuid, Pageable pageable);
     Page<QRCodeItem> findByQrCodeUuidAndUuidContainingIgnoreCase(String qrCodeUuid, String uuid, Pageable pageable);
+
+    // Keyset pages, newest first: rows strictly after the (time, id) cursor, with no count query.
+    // Ordering by the code first is a no-op here, but lets the database read the rows in the
+    // order of the (qr_code_id, time DESC, id DESC) index instead of sorting the whole gallery.
+
+    @Query("SELECT i FROM QRCodeItem i WHERE i.qrCode.id = :qrCodeId " +
+            "AND (i.createdAt < :at OR (i.createdAt = :at AND i.id < :id)) " +
+            "ORDER BY i.qrCode.id, i.createdAt DESC, i.id DESC")
+    List<QRCodeItem> findByQrCodeIdBefore(@Param("qrCodeId") Long qrCodeId, @Param("at") LocalDateTime at,
+                                          @Param("id") Long id, Limit limit);
+
+    @Query("SELECT i FROM QRCodeItem i WHERE i.qrCode.id = :qrCodeId " +
+            "AND (i.sortAt < :at OR (i.sortAt = :at AND i.id < :id)) " +
+            "ORDER BY i.qrCode.id, i.sortAt DESC, i.id DESC")
+    List<QRCodeItem> findByQrCodeIdBeforeExif(@Param("qrCodeId") Long qrCodeId, @Param("at") LocalDateTime at,
+                                              @Param("id") Long id, Limit limit);
+
+    @Modifying
+    @Query("UPDATE QRCodeItem i SET i.sortAt = COALESCE(i.exifCreatedAt, i.createdAt) WHERE i.sortAt IS NULL")
+    int fillMissingSortAt();
 }
@@ -1,6 +1,8 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.QRCode;
+import com.example.demo.model.QRCodeRef;
+import com.example.demo.model.QRCodeSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -26,4 +28,24 @@ public interface QRCodeRepository extends JpaRepository<QRCode, Long> {
 
     @Query("SELECT u FROM QRCode u WHERE createdAt <= :creationDateTime ORDER BY createdAt DESC LIMIT 1")
     QRCode findTopByCreationDateLessThanEqualOrderByCreationDateDesc(@Param("creationDateTime") LocalDateTime creationDateTime);
+
+    @Query("SELECT new com.example.demo.model.QRCodeRef(q.id, q.uuid, q.createdAt) FROM QRCode q")
+    List<QRCodeRef> findAllRefs();
+
+    @Query("SELECT new com.example.demo.model.QRCodeRef(q.id, q.uuid, q.createdAt) FROM QRCode q WHERE q.uuid = :uuid")
+    Optional<QRCodeRef> findRefByUuid(@Param("uuid") String uuid);
+
+    @Query("SELECT new com.example.demo.model.QRCodeRef(q.id, q.uuid, q.createdAt) FROM QRCode q " +
+            "JOIN q.connectionFolders f WHERE f.id = :connectionFolderId")
+    List<QRCodeRef> findRefsByConnectionFolderId(@Param("connectionFolderId") Long connectionFolderId);
+
+    @Query(value = "SELECT new com.example.demo.model.QRCodeSummary(q.id, q.uuid, q.description, q.type, " +
+            "q.createdBy, q.createdAt, q.updatedBy, q.updatedAt) FROM QRCode q",
+            countQuery = "SELECT count(q) FROM QRCode q")
+    Page<QRCodeSummary> findAllSummaries(Pageable pageable);
+
+    @Query(value = "SELECT new com.example.demo.model.QRCodeSummary(q.id, q.uuid, q.description, q.type, " +
+            "q.createdBy, q.createdAt, q.updatedBy, q.updatedAt) FROM QRCode q WHERE q.user.id = :userId",
+            countQuery = "SELECT count(q) FROM QRCode q WHERE q.user.id = :userId")
+    Page<QRCodeSummary> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
 }
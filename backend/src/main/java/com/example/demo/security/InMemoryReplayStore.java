@@ -0,0 +1,85 @@
+package com.example.demo.security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers used token ids until they expire. Each id is also filed in a one-second expiry
+ * bucket, so the sweeper only ever touches ids that are actually due instead of scanning the
+ * whole map. The map is capped at {@code maxEntries}; once full, new ids are rejected (fail
+ * closed) until the sweeper frees room.
+ */
+public class InMemoryReplayStore implements ReplayStore {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryReplayStore.class);
+
+    private final Map<String, Long> used = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Queue<String>> buckets = new ConcurrentSkipListMap<>();
+    private final int maxEntries;
+
+    public InMemoryReplayStore(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public boolean recordOnce(String jti, long expiry) {
+        long now = System.currentTimeMillis();
+        if (used.size() >= maxEntries) {
+            sweep(now);
+            if (used.size() >= maxEntries) {
+                log.warn("Replay guard full ({} entries), rejecting jti", used.size());
+                return false;
+            }
+        }
+
+        boolean[] accepted = {false};
+        used.compute(jti, (k, existing) -> {
+            if (existing != null && existing > now) {
+                return existing;
+            }
+            accepted[0] = true;
+            return expiry;
+        });
+        if (accepted[0]) {
+            buckets.computeIfAbsent(bucketOf(expiry), k -> new ConcurrentLinkedQueue<>()).add(jti);
+        }
+        return accepted[0];
+    }
+
+    public int size() {
+        return used.size();
+    }
+
+    public void sweep() {
+        sweep(System.currentTimeMillis());
+    }
+
+    private void sweep(long now) {
+        ConcurrentNavigableMap<Long, Queue<String>> due = buckets.headMap(now / 1000, true);
+        int removed = 0;
+        for (Iterator<Queue<String>> it = due.values().iterator(); it.hasNext(); ) {
+            Queue<String> bucket = it.next();
+            it.remove();
+            for (String jti : bucket) {
+                if (used.computeIfPresent(jti, (k, expiry) -> expiry <= now ? null : expiry) == null) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("Swept {} expired jtis, {} remaining", removed, used.size());
+        }
+    }
+
+    // Bucket keys are expiry rounded up to the second, so a due bucket only holds expired ids.
+    private static long bucketOf(long expiryMillis) {
+        return (expiryMillis + 999) / 1000;
+    }
+}
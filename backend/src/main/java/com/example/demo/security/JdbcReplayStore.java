@@ -0,0 +1,144 @@
+package com.example.demo.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Replay store shared by every node on the application datasource, enabled with
+ * {@code security.replayStore=jdbc}. The primary key on {@code used_jti.jti} decides which
+ * node wins an id. Claims from concurrent requests are queued and written by one thread as a
+ * single batched insert, so request threads share round trips instead of each paying one.
+ * A batch that hits a duplicate is replayed row by row to find out which ids were taken.
+ */
+@Component
+@ConditionalOnProperty(name = "security.replayStore", havingValue = "jdbc")
+public class JdbcReplayStore implements ReplayStore {
+    private static final Logger log = LoggerFactory.getLogger(JdbcReplayStore.class);
+    private static final String INSERT = "INSERT INTO used_jti (jti, expires_at) VALUES (?, ?)";
+    private static final String PURGE = "DELETE FROM used_jti WHERE expires_at < ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final long timeoutMillis;
+    private final BlockingQueue<Claim> pending = new LinkedBlockingQueue<>();
+    private Thread writer;
+
+    public JdbcReplayStore(JdbcTemplate jdbc,
+                           TransactionTemplate tx,
+                           @Value("${security.replayBatchSize:100}") int batchSize,
+                           @Value("${security.replayTimeoutMillis:2000}") long timeoutMillis) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = Thread.ofPlatform().name("replay-writer").daemon().start(this::drain);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.interrupt();
+    }
+
+    /**
+     * Blocks until the id has been written or refused. Database errors and timeouts count
+     * as refusals so the guard fails closed.
+     */
+    @Override
+    public boolean recordOnce(String jti, long expiresAtMillis) {
+        Claim claim = new Claim(jti, expiresAtMillis, new CompletableFuture<>());
+        pending.add(claim);
+        try {
+            return claim.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Replay store did not confirm jti within {} ms", timeoutMillis, e);
+            return false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.replayPurgeMillis:60000}")
+    public void purge() {
+        try {
+            int purged = jdbc.update(PURGE, System.currentTimeMillis());
+            if (purged > 0) {
+                log.debug("Purged {} expired jtis", purged);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to purge expired jtis", e);
+        }
+    }
+
+    private void drain() {
+        List<Claim> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+                pending.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+        pending.forEach(c -> c.result().complete(false));
+    }
+
+    private void flush(List<Claim> batch) {
+        try {
+            tx.executeWithoutResult(status -> jdbc.batchUpdate(INSERT, batch, batch.size(), (ps, c) -> {
+                ps.setString(1, c.jti());
+                ps.setLong(2, c.expiresAt());
+            }));
+            batch.forEach(c -> c.result().complete(true));
+        } catch (DataIntegrityViolationException e) {
+            for (Claim c : batch) {
+                c.result().complete(insert(c));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to record {} jtis", batch.size(), e);
+            batch.forEach(c -> c.result().complete(false));
+        }
+    }
+
+    private boolean insert(Claim c) {
+        try {
+            jdbc.update(INSERT, c.jti(), c.expiresAt());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        } catch (DataAccessException e) {
+            log.warn("Failed to record jti", e);
+            return false;
+        }
+    }
+
+    private record Claim(String jti, long expiresAt, CompletableFuture<Boolean> result) {
+    }
+}
@@ -1,24 +1,45 @@
 package com.example.demo.security;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Enforces one-time use of token ids. Ids are always recorded in a local
+ * {@link InMemoryReplayStore}, which rejects replays seen by this node without leaving the
+ * JVM. When a shared {@link ReplayStore} bean is configured (see
+ * {@code security.replayStore}), first uses are also claimed there so an id accepted by one
+ * node is refused by the others.
+ */
 @Component
 public class ReplayGuard {
-    private final Map<String, Instant> used = new ConcurrentHashMap<>();
+    private final InMemoryReplayStore local;
+    private final ReplayStore shared;
+
+    public ReplayGuard(@Value("${security.replayMaxEntries:100000}") int maxEntries,
+                       ObjectProvider<ReplayStore> shared) {
+        this.local = new InMemoryReplayStore(maxEntries);
+        this.shared = shared.getIfAvailable();
+    }
 
     public boolean recordJtiOnce(String jti, Duration ttl) {
-        Instant now = Instant.now();
-        Instant expiry = now.plus(ttl);
-        Instant existing = used.putIfAbsent(jti, expiry);
-        if (existing != null && existing.isAfter(now)) {
+        long expiry = System.currentTimeMillis() + ttl.toMillis();
+        if (!local.recordOnce(jti, expiry)) {
             return false;
         }
-        used.put(jti, expiry);
-        return true;
+        // The local entry stays even if the shared store refuses: the id is spent either way.
+        return shared == null || shared.recordOnce(jti, expiry);
+    }
+
+    public int size() {
+        return local.size();
+    }
+
+    @Scheduled(fixedDelayString = "${security.replaySweepMillis:10000}")
+    public void sweep() {
+        local.sweep();
     }
 }
@@ -0,0 +1,9 @@
+package com.example.demo.security;
+
+/**
+ * Records one-time token ids. Implementations must make {@link #recordOnce} atomic: of several
+ * concurrent calls for the same unexpired id, exactly one may return {@code true}.
+ */
+public interface ReplayStore {
+    boolean recordOnce(String jti, long expiresAtMillis);
+}
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
@@ -37,7 +38,11 @@ public class SecurityConfig {
         http.authorizeHttpRequests(auth -> auth
                 .requestMatchers("/login").permitAll()
                 .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html", "/qrcodes/*/token", "/h2-console/**").permitAll()
+                // Grants are reusable and gallery-wide, so only signed-in users may mint them.
+                .requestMatchers(HttpMethod.POST, "/img/*/grant").authenticated()
                 .requestMatchers("/img/**").permitAll()
+                // The image only encodes the uuid already present in its URL.
+                .requestMatchers(HttpMethod.GET, "/qrcodes/*/image").permitAll()
                 .anyRequest().authenticated()
         );
 
@@ -1,11 +1,17 @@
 package com.example.demo.security;
 
+import java.text.ParseException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
@@ -16,32 +22,93 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.jose.KeyLengthException;
 
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TokenIssuer {
+    // Parsed back from its own encoding so the header keeps its base64 form and is not
+    // re-serialised for every token.
+    private static final JWSHeader HEADER = header();
+
     private final JWSSigner signer;
     private final String issuer = "your-app";
+    private final int chunkSize;
+    private final ExecutorService signing;
 
-    public TokenIssuer(@Value("${auth.jwt.secretB64}") String secretB64) throws KeyLengthException {
+    public TokenIssuer(@Value("${auth.jwt.secretB64}") String secretB64,
+                       @Value("${security.signingThreads:0}") int threads,
+                       @Value("${security.signingChunkSize:64}") int chunkSize) throws KeyLengthException {
         this.signer = new MACSigner(Base64.getDecoder().decode(secretB64));
+        this.chunkSize = chunkSize;
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.signing = Executors.newFixedThreadPool(n, Thread.ofPlatform().name("token-signer-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        signing.shutdown();
     }
 
     public String issue(String sub, String gid, String scope, String imageId, Duration ttl) throws JOSEException {
+        return sign(template(sub, scope, ttl), gid, imageId);
+    }
+
+    public record Grant(String galleryId, String imageId) {}
+
+    /**
+     * Signs one token per grant, sharing a claims template built once for the whole batch.
+     * Grants are split into chunks that are signed in parallel; the returned futures are in
+     * grant order so callers can emit each chunk as soon as it and its predecessors finish.
+     */
+    public List<CompletableFuture<List<String>>> issueAll(String sub, String scope, List<Grant> grants, Duration ttl) {
+        JWTClaimsSet template = template(sub, scope, ttl);
+        List<CompletableFuture<List<String>>> chunks = new ArrayList<>();
+        for (int from = 0; from < grants.size(); from += chunkSize) {
+            List<Grant> chunk = grants.subList(from, Math.min(from + chunkSize, grants.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                List<String> tokens = new ArrayList<>(chunk.size());
+                for (Grant grant : chunk) {
+                    try {
+                        tokens.add(sign(template, grant.galleryId(), grant.imageId()));
+                    } catch (JOSEException e) {
+                        throw new CompletionException(e);
+                    }
+                }
+                return tokens;
+            }, signing));
+        }
+        return chunks;
+    }
+
+    private JWTClaimsSet template(String sub, String scope, Duration ttl) {
         var now = new Date();
         var exp = Date.from(Instant.now().plus(ttl));
-        var claims = new JWTClaimsSet.Builder()
+        return new JWTClaimsSet.Builder()
                 .issuer(issuer).audience("gallery")
                 .subject(sub)
                 .expirationTime(exp).notBeforeTime(now).issueTime(now)
+                .claim("scp", List.of(scope.split(" ")))
+                .build();
+    }
+
+    private String sign(JWTClaimsSet template, String gid, String imageId) throws JOSEException {
+        var claims = new JWTClaimsSet.Builder(template)
                 .jwtID(UUID.randomUUID().toString())
                 .claim("gid", gid)
-                .claim("scp", List.of(scope.split(" ")))
                 .claim("img", imageId)
                 .build();
-        var jws = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        var jws = new SignedJWT(HEADER, claims);
         jws.sign(signer);
         return jws.serialize();
     }
+
+    private static JWSHeader header() {
+        try {
+            return JWSHeader.parse(new JWSHeader(JWSAlgorithm.HS256).toBase64URL());
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -1,9 +1,15 @@
 package com.example.demo.security;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -18,32 +24,73 @@ import org.springframework.stereotype.Component;
 @Component
 public class TokenVerifier {
     private final MACVerifier mac;
+    // Signature-checked claims keyed by SHA-256 of the compact token, held until exp or until
+    // evicted oldest-first once the cache is full.
+    private final Map<String, Verified> verified;
 
-    public TokenVerifier(@Value("${auth.jwt.secretB64}") String secretB64) throws JOSEException {
+    public TokenVerifier(@Value("${auth.jwt.secretB64}") String secretB64,
+                         @Value("${security.tokenCacheSize:10000}") int cacheSize) throws JOSEException {
         this.mac = new MACVerifier(Base64.getDecoder().decode(secretB64));
+        this.verified = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                return size() > cacheSize;
+            }
+        });
     }
 
     public JWTClaimsSet verify(String token, String galleryId, String imageId, String requiredScope)
             throws ParseException, JOSEException {
-        var jws = SignedJWT.parse(token);
-        if (!jws.verify(mac)) throw new SecurityException("bad-signature");
-        var claims = jws.getJWTClaimsSet();
+        String key = digest(token);
+        Verified entry = verified.get(key);
+        if (entry == null) {
+            var jws = SignedJWT.parse(token);
+            if (!jws.verify(mac)) throw new SecurityException("bad-signature");
+            entry = Verified.of(jws.getJWTClaimsSet());
+            remember(key, entry);
+        }
 
         Date now = new Date();
-        if (claims.getExpirationTime() == null || now.after(claims.getExpirationTime()))
+        if (entry.exp() == null || now.after(entry.exp())) {
+            verified.remove(key);
             throw new SecurityException("expired");
-        if (claims.getNotBeforeTime() != null && now.before(claims.getNotBeforeTime()))
+        }
+        if (entry.nbf() != null && now.before(entry.nbf()))
             throw new SecurityException("nbf");
 
-        String gid = claims.getStringClaim("gid");
-        if (!Objects.equals(gid, galleryId)) throw new SecurityException("wrong-gallery");
+        if (!Objects.equals(entry.gid(), galleryId)) throw new SecurityException("wrong-gallery");
 
-        var scopes = Set.copyOf((List<String>) claims.getClaim("scp"));
-        if (!scopes.contains(requiredScope)) throw new SecurityException("missing-scope");
+        if (!entry.scopes().contains(requiredScope)) throw new SecurityException("missing-scope");
 
-        String boundImg = claims.getStringClaim("img");
-        if (boundImg != null && !boundImg.equals(imageId)) throw new SecurityException("wrong-image");
+        if (entry.img() != null && !entry.img().equals(imageId)) throw new SecurityException("wrong-image");
 
-        return claims;
+        return entry.claims();
+    }
+
+    public int cacheSize() {
+        return verified.size();
+    }
+
+    private void remember(String key, Verified entry) {
+        if (entry.exp() != null) verified.put(key, entry);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Verified(JWTClaimsSet claims, Date exp, Date nbf, String gid, Set<String> scopes, String img) {
+        static Verified of(JWTClaimsSet claims) throws ParseException {
+            Set<String> scopes = claims.getClaim("scp") instanceof List<?>
+                    ? Set.copyOf(claims.getStringListClaim("scp"))
+                    : Set.of();
+            return new Verified(claims, claims.getExpirationTime(), claims.getNotBeforeTime(),
+                    claims.getStringClaim("gid"), scopes, claims.getStringClaim("img"));
+        }
     }
 }
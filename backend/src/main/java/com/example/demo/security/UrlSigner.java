@@ -0,0 +1,95 @@
+package com.example.demo.security;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signs gallery-wide image grants as plain query parameters
+ * ({@code exp}, {@code pfx}, {@code scp}, {@code sig}). One grant covers every image of a
+ * gallery whose id starts with {@code pfx}, and checking it costs a single HMAC over a short
+ * canonical string instead of a JWT parse per request. Grants carry no jti and are therefore
+ * reusable until they expire.
+ */
+@Component
+public class UrlSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String VERSION = "v1";
+    private static final int SIG_BYTES = 16;
+
+    private final ThreadLocal<Mac> mac;
+
+    public UrlSigner(@Value("${security.urlSecretB64:${auth.jwt.secretB64}}") String secretB64) {
+        SecretKeySpec key = new SecretKeySpec(Base64.getDecoder().decode(secretB64), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance(ALGORITHM);
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        mac.get();
+    }
+
+    public record Grant(String galleryId, long exp, String prefix, String scope, String sig) {
+        public String query() {
+            return "exp=" + exp
+                    + "&pfx=" + URLEncoder.encode(prefix, StandardCharsets.UTF_8)
+                    + "&scp=" + URLEncoder.encode(scope, StandardCharsets.UTF_8)
+                    + "&sig=" + sig;
+        }
+    }
+
+    public Grant sign(String galleryId, String prefix, String scope, Duration ttl) {
+        String pfx = prefix == null ? "" : prefix;
+        long exp = Instant.now().plus(ttl).getEpochSecond();
+        return new Grant(galleryId, exp, pfx, scope, encode(mac(galleryId, exp, pfx, scope)));
+    }
+
+    public void verify(String galleryId, String imageId, Long exp, String prefix, String scope, String sig,
+                       String requiredScope) {
+        if (exp == null || scope == null) throw new SecurityException("missing-claims");
+        String pfx = prefix == null ? "" : prefix;
+        byte[] presented;
+        try {
+            presented = Base64.getUrlDecoder().decode(sig);
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("bad-signature");
+        }
+        if (!MessageDigest.isEqual(presented, mac(galleryId, exp, pfx, scope))) {
+            throw new SecurityException("bad-signature");
+        }
+        if (Instant.now().getEpochSecond() >= exp) throw new SecurityException("expired");
+        if (!imageId.startsWith(pfx)) throw new SecurityException("wrong-image");
+        if (!Set.of(scope.split(" ")).contains(requiredScope)) throw new SecurityException("missing-scope");
+    }
+
+    // Each field is length-prefixed, so no choice of ids or prefix can shift bytes from one field
+    // into the next and reproduce another grant's canonical string.
+    private byte[] mac(String galleryId, long exp, String prefix, String scope) {
+        StringBuilder canonical = new StringBuilder(VERSION);
+        for (String field : new String[] {galleryId, Long.toString(exp), prefix, scope}) {
+            canonical.append(field.length()).append(':').append(field);
+        }
+        byte[] full = mac.get().doFinal(canonical.toString().getBytes(StandardCharsets.UTF_8));
+        return Arrays.copyOf(full, SIG_BYTES);
+    }
+
+    private static String encode(byte[] sig) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sig);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo.service;
+
+/**
+ * Published by {@link ConnectionFolderService} after a folder connection is saved, updated or
+ * deleted.
+ */
+public record ConnectionFolderChangedEvent(Long folderId, boolean deleted) {
+}
@@ -3,19 +3,26 @@ package com.example.demo.service;
 import com.example.demo.model.ConnectionFolder;
 import com.example.demo.repository.ConnectionFolderRepository;
 import com.example.demo.repository.QRCodeRepository;
-import com.example.demo.repository.QRCodeItemRepository;
 import com.example.demo.camel.ConnectionFolderRouteBuilder;
+import com.example.demo.camel.FolderWatcher;
+import com.example.demo.imaging.DerivativePipeline;
+import com.example.demo.storage.ContentStore;
 import org.apache.camel.CamelContext;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.RouteDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,24 +30,45 @@ import java.util.Optional;
 public class ConnectionFolderService {
     private final ConnectionFolderRepository repository;
     private final QRCodeRepository qrCodeRepository;
-    private final QRCodeItemRepository itemRepository;
+    private final QRCodeItemWriter itemWriter;
     private final CamelContext camelContext;
+    private final FolderWatcher watcher;
+    private final DerivativePipeline derivatives;
+    private final ContentStore store;
+    private final FolderQRCodeCache folderCodes;
+    private final ApplicationEventPublisher events;
     private final String photoFolderPath;
     private final String pollingFolderPath;
+    private final int ingestPoolSize;
+    private final int ingestMaxQueueSize;
     private static final Logger log = LoggerFactory.getLogger(ConnectionFolderService.class);
 
     public ConnectionFolderService(ConnectionFolderRepository repository,
                                    QRCodeRepository qrCodeRepository,
-                                   QRCodeItemRepository itemRepository,
+                                   QRCodeItemWriter itemWriter,
                                    CamelContext camelContext,
+                                   FolderWatcher watcher,
+                                   DerivativePipeline derivatives,
+                                   ContentStore store,
+                                   FolderQRCodeCache folderCodes,
+                                   ApplicationEventPublisher events,
                                    @Value("${photo_folder_path}") String photoFolderPath,
-                                   @Value("${polling_folder_path}") String pollingFolderPath) {
+                                   @Value("${polling_folder_path}") String pollingFolderPath,
+                                   @Value("${ingest.poolSize:4}") int ingestPoolSize,
+                                   @Value("${ingest.maxQueueSize:100}") int ingestMaxQueueSize) {
         this.repository = repository;
         this.qrCodeRepository = qrCodeRepository;
-        this.itemRepository = itemRepository;
+        this.itemWriter = itemWriter;
         this.camelContext = camelContext;
+        this.watcher = watcher;
+        this.derivatives = derivatives;
+        this.store = store;
+        this.folderCodes = folderCodes;
+        this.events = events;
         this.photoFolderPath = photoFolderPath;
         this.pollingFolderPath = pollingFolderPath;
+        this.ingestPoolSize = ingestPoolSize;
+        this.ingestMaxQueueSize = ingestMaxQueueSize;
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -49,6 +77,7 @@ public class ConnectionFolderService {
             addCamelRoute(connection);
             if (connection.isEnabled()) {
                 startCamelRoute(connection.getId().toString());
+                watch(connection);
             }
         });
     }
@@ -66,10 +95,43 @@ public class ConnectionFolderService {
     public ConnectionFolder save(ConnectionFolder connection) {
         log.info("Saving folder connection {}", connection.getName());
         ConnectionFolder saved = repository.save(connection);
+        events.publishEvent(new ConnectionFolderChangedEvent(saved.getId(), false));
         addCamelRoute(saved);
+        if (saved.isEnabled()) {
+            watch(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Saves new folder connections with batched inserts. Their routes are registered with Camel
+     * in one call, and their folders watched, only after the surrounding transaction commits.
+     */
+    public List<ConnectionFolder> saveAll(List<ConnectionFolder> connections) {
+        log.info("Saving {} folder connections", connections.size());
+        List<ConnectionFolder> saved = repository.saveAll(connections);
+        saved.forEach(s -> events.publishEvent(new ConnectionFolderChangedEvent(s.getId(), false)));
+        events.publishEvent(new ConnectionFoldersCreatedEvent(saved));
         return saved;
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFoldersCreated(ConnectionFoldersCreatedEvent event) {
+        List<ConnectionFolder> folders = event.folders();
+        try {
+            List<RouteDefinition> routes = new ArrayList<>();
+            for (ConnectionFolder connection : folders) {
+                routes.addAll(routeBuilder(connection).configureRoutes(camelContext).getRoutes());
+            }
+            ((ModelCamelContext) camelContext).addRouteDefinitions(routes);
+        } catch (Exception e) {
+            log.error("Failed to add Camel routes for {} folder connections", folders.size(), e);
+        }
+        // Each watch creates the polling folder and registers it; these are independent
+        // syscalls, so a bulk run issues them concurrently rather than one folder at a time.
+        folders.parallelStream().filter(ConnectionFolder::isEnabled).forEach(this::watch);
+    }
+
     public ConnectionFolder update(ConnectionFolder connection) {
         log.info("Updating folder connection {}", connection.getId());
         return repository.findById(connection.getId())
@@ -79,9 +141,15 @@ public class ConnectionFolderService {
                     existing.setPath(connection.getPath());
                     existing.setEnabled(connection.isEnabled());
                     ConnectionFolder updated = repository.save(existing);
+                    events.publishEvent(new ConnectionFolderChangedEvent(updated.getId(), false));
                     if (!wasEnabled && updated.isEnabled()) {
                         startCamelRoute(updated.getId().toString());
                     }
+                    // Re-register so a changed path takes effect.
+                    watcher.unwatch(updated.getId());
+                    if (updated.isEnabled()) {
+                        watch(updated);
+                    }
                     return updated;
                 })
                 .orElseThrow();
@@ -89,7 +157,9 @@ public class ConnectionFolderService {
 
     public void delete(Long id) {
         log.info("Deleting folder connection {}", id);
+        watcher.unwatch(id);
         repository.deleteById(id);
+        events.publishEvent(new ConnectionFolderChangedEvent(id, true));
     }
 
     public boolean testConnection(ConnectionFolder connection) {
@@ -107,14 +177,23 @@ public class ConnectionFolderService {
 
     private void addCamelRoute(ConnectionFolder connection) {
         try {
-            String fullPath = pollingFolderPath + connection.getPath();
-            log.debug("addCamelRoute, Path: {}", fullPath);
-            camelContext.addRoutes(new ConnectionFolderRouteBuilder(photoFolderPath, fullPath, connection, qrCodeRepository, itemRepository));
+            camelContext.addRoutes(routeBuilder(connection));
         } catch (Exception e) {
             log.error("Failed to add Camel route for connection {}", connection.getId(), e);
         }
     }
 
+    private ConnectionFolderRouteBuilder routeBuilder(ConnectionFolder connection) {
+        return new ConnectionFolderRouteBuilder(photoFolderPath, connection, qrCodeRepository, folderCodes,
+                itemWriter, derivatives, store, ingestPoolSize, ingestMaxQueueSize);
+    }
+
+    private void watch(ConnectionFolder connection) {
+        Path fullPath = Paths.get(pollingFolderPath + connection.getPath());
+        log.debug("watch, Path: {}", fullPath);
+        watcher.watch(connection.getId(), fullPath);
+    }
+
     private void startCamelRoute(String routeId) {
         try {
             camelContext.getRouteController().startRoute(routeId);
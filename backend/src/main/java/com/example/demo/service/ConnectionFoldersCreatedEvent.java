@@ -0,0 +1,13 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ConnectionFolder;
+
+import java.util.List;
+
+/**
+ * Published by {@link ConnectionFolderService#saveAll} for a batch of new folder connections.
+ * Their ingest routes and watches are set up once the inserting transaction commits, so a
+ * rolled-back batch leaves nothing behind.
+ */
+public record ConnectionFoldersCreatedEvent(List<ConnectionFolder> folders) {
+}
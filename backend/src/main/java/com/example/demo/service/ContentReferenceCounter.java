@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import com.example.demo.imaging.DerivativeCache;
+import com.example.demo.imaging.DerivativePipeline;
+import com.example.demo.repository.QRCodeItemRepository;
+import com.example.demo.storage.ContentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes a deleted item's gallery links and, once no item references its content hash any
+ * more, the blob itself. The reference count is the number of {@code qr_code_items} rows with
+ * that hash, read after the delete commits.
+ */
+@Component
+public class ContentReferenceCounter {
+    private static final Logger log = LoggerFactory.getLogger(ContentReferenceCounter.class);
+
+    private final QRCodeItemRepository repository;
+    private final ContentStore store;
+    private final DerivativeCache derivativeCache;
+    private final QRCodeItemWriter itemWriter;
+    private final String photoFolderPath;
+
+    public ContentReferenceCounter(QRCodeItemRepository repository,
+                                   ContentStore store,
+                                   DerivativeCache derivativeCache,
+                                   QRCodeItemWriter itemWriter,
+                                   @Value("${photo_folder_path}") String photoFolderPath) {
+        this.repository = repository;
+        this.store = store;
+        this.derivativeCache = derivativeCache;
+        this.itemWriter = itemWriter;
+        this.photoFolderPath = photoFolderPath;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemDeleted(QRCodeItemDeletedEvent event) {
+        List<String> files = new ArrayList<>();
+        files.add(event.fileName());
+        if (event.variants() != null && !event.variants().isBlank()) {
+            for (String variant : event.variants().split(",")) {
+                files.add(DerivativePipeline.variantFileName(event.fileName(), variant));
+            }
+        }
+
+        Path galleryDir = Paths.get(photoFolderPath + event.galleryUuid());
+        try {
+            for (String name : files) {
+                Files.deleteIfExists(galleryDir.resolve(name));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to unlink {} from {}", event.fileName(), galleryDir, e);
+        }
+        // On-demand renders are keyed by gallery path, so they would outlive the photo otherwise.
+        for (String name : files) {
+            derivativeCache.purge(event.galleryUuid() + "/" + name);
+        }
+
+        // Ingest and upload hold the hash from storing the blob until their item is saved or
+        // queued, so counting under the same lock, queued items included, sees every reference.
+        String hash = event.contentHash();
+        store.release(hash, files.subList(1, files.size()),
+                () -> repository.countByContentHash(hash) == 0 && !itemWriter.isPending(hash));
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+/**
+ * One page of a keyset listing. {@code nextCursor} is null on the last page.
+ */
+public record CursorPage<T>(List<T> content, String nextCursor) {
+}
@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import com.example.demo.model.QRCodeRef;
+import com.example.demo.repository.QRCodeRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QR codes linked to each folder connection, loaded on first use and dropped whenever a QR
+ * code or folder connection changes. Ingest routes read links from here so polling a file
+ * does not cost a join query.
+ */
+@Component
+public class FolderQRCodeCache {
+    private final QRCodeRepository repository;
+    private final Map<Long, List<QRCodeRef>> byFolder = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public FolderQRCodeCache(QRCodeRepository repository) {
+        this.repository = repository;
+    }
+
+    public List<QRCodeRef> codesFor(Long folderId) {
+        List<QRCodeRef> cached = byFolder.get(folderId);
+        if (cached != null) {
+            return cached;
+        }
+        long seen = generation.get();
+        List<QRCodeRef> codes = List.copyOf(repository.findRefsByConnectionFolderId(folderId));
+        byFolder.put(folderId, codes);
+        // An invalidation that raced with the query may have missed our entry; drop it so the
+        // next caller reloads.
+        if (generation.get() != seen) {
+            byFolder.remove(folderId, codes);
+        }
+        return codes;
+    }
+
+    // QR code changes can relink any folder, so they clear everything.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQRCodeChange(QRCodeChangedEvent event) {
+        generation.incrementAndGet();
+        byFolder.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFolderChange(ConnectionFolderChangedEvent event) {
+        generation.incrementAndGet();
+        byFolder.remove(event.folderId());
+    }
+}
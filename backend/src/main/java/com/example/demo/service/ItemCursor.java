@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import com.example.demo.model.QRCodeItem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a newest-first gallery listing: the sort time and id of the last item returned.
+ * Clients only see it as an opaque URL-safe string.
+ */
+public record ItemCursor(LocalDateTime at, long id) {
+    /** Sorts before every real item, used when no cursor is given. */
+    public static final ItemCursor START = new ItemCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    public static ItemCursor after(QRCodeItem item, boolean byExif) {
+        LocalDateTime at = byExif ? item.getSortAt() : item.getCreatedAt();
+        return new ItemCursor(at, item.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code token} was not produced by {@link #encode()}
+     */
+    public static ItemCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new ItemCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((at + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
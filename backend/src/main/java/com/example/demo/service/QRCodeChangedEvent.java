@@ -0,0 +1,9 @@
+package com.example.demo.service;
+
+import com.example.demo.model.QRCodeRef;
+
+/**
+ * Published by {@link QRCodeService} after a QR code is saved, updated or deleted.
+ */
+public record QRCodeChangedEvent(QRCodeRef code, boolean deleted) {
+}
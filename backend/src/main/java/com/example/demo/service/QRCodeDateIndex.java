@@ -0,0 +1,99 @@
+package com.example.demo.service;
+
+import com.example.demo.model.QRCodeRef;
+import com.example.demo.repository.QRCodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * QR codes ordered by creation time, so a photo can be matched to the code created last
+ * before it with a floor lookup instead of a query. Loaded once the application is ready
+ * and kept current from {@link QRCodeChangedEvent}s. Until it is loaded, lookups fall back
+ * to the repository.
+ */
+@Component
+public class QRCodeDateIndex {
+    private static final Logger log = LoggerFactory.getLogger(QRCodeDateIndex.class);
+
+    // Keyed by (createdAt, id) so codes created in the same instant do not overwrite each other.
+    private final ConcurrentSkipListMap<Key, QRCodeRef> byCreatedAt = new ConcurrentSkipListMap<>();
+    private final Map<Long, Key> byId = new ConcurrentHashMap<>();
+    private final QRCodeRepository repository;
+    private volatile boolean loaded;
+
+    public QRCodeDateIndex(QRCodeRepository repository) {
+        this.repository = repository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        repository.findAllRefs().forEach(this::put);
+        loaded = true;
+        log.info("Indexed {} QR codes by creation date", byId.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(QRCodeChangedEvent event) {
+        if (event.deleted()) {
+            remove(event.code().id());
+        } else {
+            put(event.code());
+        }
+    }
+
+    /**
+     * Returns the most recently created code whose creation time is at or before {@code time},
+     * or {@code null} if there is none.
+     */
+    public QRCodeRef floor(LocalDateTime time) {
+        if (!loaded) {
+            var code = repository.findTopByCreationDateLessThanEqualOrderByCreationDateDesc(time);
+            return code == null ? null : QRCodeRef.of(code);
+        }
+        var entry = byCreatedAt.floorEntry(new Key(time, Long.MAX_VALUE));
+        return entry == null ? null : entry.getValue();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    private void put(QRCodeRef ref) {
+        if (ref.id() == null || ref.createdAt() == null) {
+            return;
+        }
+        Key key = new Key(ref.createdAt(), ref.id());
+        Key previous = byId.put(ref.id(), key);
+        if (previous != null && !previous.equals(key)) {
+            byCreatedAt.remove(previous);
+        }
+        byCreatedAt.put(key, ref);
+    }
+
+    private void remove(Long id) {
+        Key key = byId.remove(id);
+        if (key != null) {
+            byCreatedAt.remove(key);
+        }
+    }
+
+    private record Key(LocalDateTime createdAt, long id) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER =
+                Comparator.comparing(Key::createdAt).thenComparingLong(Key::id);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
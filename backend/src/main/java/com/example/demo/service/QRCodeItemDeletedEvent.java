@@ -0,0 +1,7 @@
+package com.example.demo.service;
+
+/**
+ * Published by {@link QRCodeItemService} for each content-addressed QR code item it deletes.
+ */
+public record QRCodeItemDeletedEvent(String galleryUuid, String fileName, String contentHash, String variants) {
+}
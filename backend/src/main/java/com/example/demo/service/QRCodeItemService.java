@@ -6,22 +6,49 @@ import com.example.demo.repository.QRCodeItemRepository;
 import com.example.demo.repository.QRCodeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Service
 public class QRCodeItemService {
     private final QRCodeItemRepository repository;
     private final QRCodeRepository qrCodeRepository;
+    private final ApplicationEventPublisher events;
+    private final int maxPageSize;
     private static final Logger log = LoggerFactory.getLogger(QRCodeItemService.class);
 
-    public QRCodeItemService(QRCodeItemRepository repository, QRCodeRepository qrCodeRepository) {
+    public QRCodeItemService(QRCodeItemRepository repository, QRCodeRepository qrCodeRepository,
+                             ApplicationEventPublisher events,
+                             @Value("${items.maxPageSize:100}") int maxPageSize) {
         this.repository = repository;
         this.qrCodeRepository = qrCodeRepository;
+        this.events = events;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /** Rows written before sortAt existed get it filled in once, so capture-time pages see them. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void fillMissingSortAt() {
+        int filled = repository.fillMissingSortAt();
+        if (filled > 0) {
+            log.info("Filled sort time of {} QR code items", filled);
+        }
+    }
+
+    /** Clamps a requested keyset page size to [1, {@code items.maxPageSize}]. */
+    private int pageSize(int requested) {
+        return Math.min(Math.max(requested, 1), maxPageSize);
     }
 
     public Page<QRCodeItem> findByQrCodeId(Long qrCodeId, Pageable pageable) {
@@ -50,6 +77,39 @@ public class QRCodeItemService {
         return repository.findByQrCodeUuidAndUuidContainingIgnoreCase(qrCodeUuid, uuid, pageable);
     }
 
+    /**
+     * Newest-first keyset page of a QR code's items, sorted by {@code createdAt} or, when
+     * {@code byExif}, by capture time falling back to {@code createdAt}. {@code size} is
+     * clamped with {@link #pageSize}.
+     *
+     * @throws IllegalArgumentException if {@code cursor} is malformed
+     */
+    public CursorPage<QRCodeItem> scrollByQrCodeId(Long qrCodeId, String cursor, int size, boolean byExif) {
+        ItemCursor from = ItemCursor.decode(cursor);
+        size = pageSize(size);
+        log.debug("Scrolling items for QR code {} after {} size {}", qrCodeId, from, size);
+        Limit limit = Limit.of(size + 1);
+        return page(byExif
+                ? repository.findByQrCodeIdBeforeExif(qrCodeId, from.at(), from.id(), limit)
+                : repository.findByQrCodeIdBefore(qrCodeId, from.at(), from.id(), limit), size, byExif);
+    }
+
+    /** Resolves the code first, so the page is read straight off the item index without a join. */
+    public CursorPage<QRCodeItem> scrollByQrCodeUuid(String qrCodeUuid, String cursor, int size, boolean byExif) {
+        return qrCodeRepository.findRefByUuid(qrCodeUuid)
+                .map(code -> scrollByQrCodeId(code.id(), cursor, size, byExif))
+                .orElseGet(() -> new CursorPage<>(List.of(), null));
+    }
+
+    // One extra row is fetched to tell whether another page exists.
+    private static CursorPage<QRCodeItem> page(List<QRCodeItem> rows, int size, boolean byExif) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, null);
+        }
+        List<QRCodeItem> content = rows.subList(0, size);
+        return new CursorPage<>(content, ItemCursor.after(content.get(size - 1), byExif).encode());
+    }
+
     public Optional<QRCodeItem> findById(Long id) {
         log.debug("Finding QR code item {}", id);
         return repository.findById(id);
@@ -81,12 +141,22 @@ public class QRCodeItemService {
     @Transactional
     public void delete(Long id) {
         log.info("Deleting QR code item {}", id);
-        repository.deleteById(id);
+        repository.findById(id).ifPresent(item -> {
+            repository.delete(item);
+            publishDeleted(item);
+        });
     }
 
     @Transactional
     public void deleteByUuid(String uuid) {
         log.info("Deleting QR code item {}", uuid);
-        repository.deleteByUuid(uuid);
+        repository.deleteByUuid(uuid).forEach(this::publishDeleted);
+    }
+
+    private void publishDeleted(QRCodeItem item) {
+        if (item.getContentHash() != null && item.getQrCode() != null) {
+            events.publishEvent(new QRCodeItemDeletedEvent(item.getQrCode().getUuid(), item.getFileName(),
+                    item.getContentHash(), item.getVariants()));
+        }
     }
 }
@@ -0,0 +1,259 @@
+package com.example.demo.service;
+
+import com.example.demo.imaging.DerivativePipeline;
+import com.example.demo.imaging.ExifDateReader;
+import com.example.demo.model.QRCodeItem;
+import com.example.demo.model.QRCodeItemHash;
+import com.example.demo.model.QRCodeRef;
+import com.example.demo.repository.QRCodeItemRepository;
+import com.example.demo.repository.QRCodeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Collects items produced by ingest routes and inserts them in batches, flushing once
+ * {@code ingest.writeBatchSize} items are waiting or {@code ingest.writeWindowMillis} after
+ * the first one arrived. Each batch is one transaction with JDBC-batched inserts; if it
+ * fails, its items are retried one per transaction so a single bad row only loses itself.
+ * The queue is bounded, so a burst that outruns the database blocks the ingest threads.
+ * <p>
+ * Ingest links files into galleries before their rows are written, so items still queued when
+ * the process dies leave files without rows. Once the application is ready, every gallery is
+ * checked for content-addressed files ({@code <sha256>.jpg}) that have no row and were linked
+ * before this writer started, and those are queued again with their EXIF capture time.
+ */
+@Component
+public class QRCodeItemWriter {
+    private static final Logger log = LoggerFactory.getLogger(QRCodeItemWriter.class);
+
+    private final QRCodeItemRepository repository;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final long windowNanos;
+    private final BlockingQueue<QRCodeItem> pending;
+    // Content hashes of queued and unsaved items, with how many of each.
+    private final Map<String, Integer> pendingHashes = new ConcurrentHashMap<>();
+    private final QRCodeRepository qrCodeRepository;
+    private final DerivativePipeline derivatives;
+    private final String photoFolderPath;
+    private Thread writer;
+    private volatile boolean stopped;
+    private volatile FileTime startedAt;
+
+    public QRCodeItemWriter(QRCodeItemRepository repository,
+                            TransactionTemplate tx,
+                            QRCodeRepository qrCodeRepository,
+                            DerivativePipeline derivatives,
+                            @Value("${photo_folder_path}") String photoFolderPath,
+                            @Value("${ingest.writeBatchSize:50}") int batchSize,
+                            @Value("${ingest.writeWindowMillis:500}") long windowMillis,
+                            @Value("${ingest.writeQueueSize:1000}") int queueSize) {
+        this.repository = repository;
+        this.tx = tx;
+        this.batchSize = batchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.pending = new LinkedBlockingQueue<>(queueSize);
+        this.qrCodeRepository = qrCodeRepository;
+        this.derivatives = derivatives;
+        this.photoFolderPath = photoFolderPath;
+    }
+
+    // Runs before any ingest route exists (they are built with this writer), so every file
+    // linked by a live ingest has a change time after startedAt.
+    @PostConstruct
+    public void start() {
+        startedAt = FileTime.from(Instant.now());
+        writer = Thread.ofPlatform().name("item-writer").daemon().start(this::drain);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        writer.interrupt();
+        writer.join(TimeUnit.NANOSECONDS.toMillis(windowNanos) + 5000);
+        flushPending();
+    }
+
+    public void enqueue(QRCodeItem item) throws InterruptedException {
+        if (item.getContentHash() != null) {
+            pendingHashes.merge(item.getContentHash(), 1, Integer::sum);
+        }
+        try {
+            pending.put(item);
+        } catch (InterruptedException e) {
+            saved(item);
+            throw e;
+        }
+        // A route still shutting down after stop() must not leave its item in a dead queue.
+        if (stopped) {
+            flushPending();
+        }
+    }
+
+    /** Whether an item with {@code contentHash} is queued but not saved yet. */
+    public boolean isPending(String contentHash) {
+        return pendingHashes.containsKey(contentHash);
+    }
+
+    private void saved(QRCodeItem item) {
+        if (item.getContentHash() != null) {
+            pendingHashes.computeIfPresent(item.getContentHash(), (hash, n) -> n == 1 ? null : n - 1);
+        }
+    }
+
+    private synchronized void flushPending() {
+        List<QRCodeItem> rest = new ArrayList<>();
+        pending.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() throws InterruptedException {
+        Map<Long, Set<String>> hashes = new HashMap<>();
+        for (QRCodeItemHash saved : repository.findAllContentHashes()) {
+            hashes.computeIfAbsent(saved.qrCodeId(), id -> new HashSet<>()).add(saved.contentHash());
+        }
+        int recovered = 0;
+        for (QRCodeRef code : qrCodeRepository.findAllRefs()) {
+            Path gallery = Path.of(photoFolderPath + code.uuid());
+            if (!Files.isDirectory(gallery)) {
+                continue;
+            }
+            Set<String> known = hashes.getOrDefault(code.id(), Set.of());
+            List<Path> orphans;
+            try (Stream<Path> files = Files.list(gallery)) {
+                orphans = files.filter(f -> isOrphan(f, known)).toList();
+            } catch (IOException e) {
+                log.warn("Failed to scan gallery {} for unsaved items", gallery, e);
+                continue;
+            }
+            for (Path file : orphans) {
+                enqueue(recoveredItem(code, file));
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            log.warn("Queued {} gallery files that had no QR code item", recovered);
+        }
+    }
+
+    private boolean isOrphan(Path file, Set<String> known) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(".jpg") || name.length() != 68) {
+            return false;
+        }
+        String hash = name.substring(0, 64);
+        return hash.chars().allMatch(HexFormat::isHexDigit) && !known.contains(hash) && linkedBeforeStart(file);
+    }
+
+    // Creating a hard link or a copy sets the file's change time, so anything linked by this
+    // process is newer than startedAt and may still have its row queued.
+    private boolean linkedBeforeStart(Path file) {
+        try {
+            FileTime changed;
+            try {
+                changed = (FileTime) Files.getAttribute(file, "unix:ctime");
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                changed = Files.getLastModifiedTime(file);
+            }
+            return changed.compareTo(startedAt) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private QRCodeItem recoveredItem(QRCodeRef code, Path file) {
+        String fileName = file.getFileName().toString();
+        List<String> variants = new ArrayList<>();
+        for (DerivativePipeline.Variant variant : derivatives.variants()) {
+            if (Files.exists(file.resolveSibling(DerivativePipeline.variantFileName(fileName, variant.name())))) {
+                variants.add(variant.name());
+            }
+        }
+        QRCodeItem item = new QRCodeItem();
+        item.setQrCode(qrCodeRepository.getReferenceById(code.id()));
+        item.setUuid(code.uuid());
+        item.setFileName(fileName);
+        item.setContentHash(fileName.substring(0, 64));
+        item.setVariants(String.join(",", variants));
+        try {
+            item.setExifCreatedAt(ExifDateReader.dateTimeOriginal(file));
+        } catch (IOException e) {
+            log.warn("Failed to read metadata for {}", file, e);
+        }
+        item.setCreatedBy("system");
+        item.setUpdatedBy("system");
+        return item;
+    }
+
+    private void drain() {
+        List<QRCodeItem> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < batchSize) {
+                    QRCodeItem next = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    pending.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<QRCodeItem> batch) {
+        try {
+            tx.executeWithoutResult(status -> repository.saveAll(batch));
+            log.debug("Saved {} QR code items", batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} QR code items failed, retrying one by one", batch.size(), e);
+            for (QRCodeItem item : batch) {
+                // The failed transaction already handed out an id; persist as new again.
+                item.setId(null);
+                try {
+                    tx.executeWithoutResult(status -> repository.save(item));
+                } catch (RuntimeException rowFailure) {
+                    log.error("Dropping QR code item {} ({})", item.getUuid(), item.getFileName(), rowFailure);
+                }
+            }
+        } finally {
+            batch.forEach(this::saved);
+        }
+    }
+}
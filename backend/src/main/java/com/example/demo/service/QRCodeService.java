@@ -1,9 +1,13 @@
 package com.example.demo.service;
 
+import com.example.demo.imaging.QRCodeRenderer;
 import com.example.demo.model.QRCode;
 import com.example.demo.model.ConnectionFolder;
+import com.example.demo.model.QRCodeRef;
+import com.example.demo.model.QRCodeSummary;
 import com.example.demo.repository.QRCodeRepository;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -17,19 +21,23 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class QRCodeService {
     private final QRCodeRepository repository;
     private final ConnectionFolderService connectionFolderService;
+    private final ApplicationEventPublisher events;
     private final String pollingFolderPath;
     private static final Logger log = LoggerFactory.getLogger(QRCodeService.class);
 
     public QRCodeService(QRCodeRepository repository,
                          ConnectionFolderService connectionFolderService,
+                         ApplicationEventPublisher events,
                          @Value("${polling_folder_path}") String pollingFolderPath) {
         this.repository = repository;
         this.connectionFolderService = connectionFolderService;
+        this.events = events;
         this.pollingFolderPath = pollingFolderPath;
     }
 
@@ -38,9 +46,9 @@ public class QRCodeService {
         return repository.findAll();
     }
 
-    public Page<QRCode> findAll(Pageable pageable) {
+    public Page<QRCodeSummary> findAll(Pageable pageable) {
         log.debug("Retrieving QR codes page {}", pageable);
-        return repository.findAll(pageable);
+        return repository.findAllSummaries(pageable);
     }
 
     public Page<QRCode> findAllByCreatedBy(String createdBy, Pageable pageable) {
@@ -48,9 +56,9 @@ public class QRCodeService {
         return repository.findByCreatedBy(createdBy, pageable);
     }
 
-    public Page<QRCode> findAllByUserId(Long userId, Pageable pageable) {
+    public Page<QRCodeSummary> findAllByUserId(Long userId, Pageable pageable) {
         log.debug("Retrieving QR codes for user {} page {}", userId, pageable);
-        return repository.findByUserId(userId, pageable);
+        return repository.findSummariesByUserId(userId, pageable);
     }
 
     public Optional<QRCode> findById(Long id) {
@@ -63,6 +71,10 @@ public class QRCodeService {
         return repository.findByUuid(uuid);
     }
 
+    public Optional<QRCodeRef> findRefByUuid(String uuid) {
+        return repository.findRefByUuid(uuid);
+    }
+
     public QRCode save(QRCode qrCode) {
         log.info("Saving QR code with description {}", qrCode.getDescription());
         QRCode saved = repository.save(qrCode);
@@ -83,7 +95,45 @@ public class QRCodeService {
         ConnectionFolder savedFolder = connectionFolderService.save(folder);
         saved.getConnectionFolders().add(savedFolder);
 
-        return repository.save(saved);
+        saved = repository.save(saved);
+        events.publishEvent(new QRCodeChangedEvent(QRCodeRef.of(saved), false));
+        return saved;
+    }
+
+    /**
+     * Bulk form of {@link #save}: renders the codes in parallel, then inserts folder connections
+     * and codes in JDBC batches within one transaction. The ingest routes are registered together,
+     * and the polling folders created and watched, once that transaction commits.
+     */
+    @Transactional
+    public List<QRCode> saveAll(List<QRCode> codes) {
+        log.info("Saving {} QR codes", codes.size());
+        // CPU-only work on the common pool; renders bypass the image cache so a bulk run does not
+        // evict the images clients are actually fetching.
+        codes.parallelStream().forEach(code -> {
+            if (code.getUuid() == null) {
+                code.setUuid(UUID.randomUUID().toString());
+            }
+            if (code.getBlob() == null) {
+                code.setBlob(QRCodeRenderer.png(code.getUuid(), QRCode.BLOB_SIZE));
+            }
+        });
+
+        List<ConnectionFolder> folders = codes.stream().map(code -> {
+            ConnectionFolder folder = new ConnectionFolder();
+            folder.setPath(code.getUuid());
+            folder.setName("Default");
+            folder.setEnabled(true);
+            return folder;
+        }).toList();
+        List<ConnectionFolder> savedFolders = connectionFolderService.saveAll(folders);
+        for (int i = 0; i < codes.size(); i++) {
+            codes.get(i).getConnectionFolders().add(savedFolders.get(i));
+        }
+
+        List<QRCode> saved = repository.saveAll(codes);
+        saved.forEach(code -> events.publishEvent(new QRCodeChangedEvent(QRCodeRef.of(code), false)));
+        return saved;
     }
 
     public QRCode update(QRCode qrCode) {
@@ -96,7 +146,9 @@ public class QRCodeService {
                     existing.setConnectionFTPs(qrCode.getConnectionFTPs());
                     existing.setConnectionFolders(qrCode.getConnectionFolders());
                     existing.setType(qrCode.getType());
-                    return repository.save(existing);
+                    QRCode saved = repository.save(existing);
+                    events.publishEvent(new QRCodeChangedEvent(QRCodeRef.of(saved), false));
+                    return saved;
                 })
                 .orElseThrow();
     }
@@ -105,11 +157,15 @@ public class QRCodeService {
     public void delete(Long id) {
         log.info("Deleting QR code {}", id);
         repository.deleteById(id);
+        events.publishEvent(new QRCodeChangedEvent(new QRCodeRef(id, null, null), true));
     }
 
     @Transactional
     public void deleteByUuid(String uuid) {
         log.info("Deleting QR code {}", uuid);
-        repository.deleteByUuid(uuid);
+        repository.findByUuid(uuid).ifPresent(code -> {
+            repository.delete(code);
+            events.publishEvent(new QRCodeChangedEvent(QRCodeRef.of(code), true));
+        });
     }
 }
@@ -0,0 +1,310 @@
+package com.example.demo.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed blob store: each distinct photo is kept once as
+ * {@code <blobRoot>/<first two hex digits>/<sha256>.jpg}, with its derivatives beside it.
+ * Galleries hold hard links to the blobs, so the image proxy keeps serving plain gallery paths
+ * while the bytes and their page-cache pages are shared.
+ */
+@Component
+public class ContentStore {
+    private static final Logger log = LoggerFactory.getLogger(ContentStore.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // strerror texts of EXDEV, EPERM and EMLINK, the link(2) failures a copy can stand in for
+    private static final List<String> LINK_UNSUPPORTED =
+            List.of("cross-device", "Operation not permitted", "Too many links");
+
+    private final Path root;
+    private final Path incoming;
+    private final FileStore fileStore;
+    private final Lock[] locks = new Lock[64];
+
+    public ContentStore(@Value("${storage.blobRoot}") String root) throws IOException {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.incoming = Files.createDirectories(this.root.resolve("incoming"));
+        this.fileStore = Files.getFileStore(this.root);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Moves {@code source} into the store. The file is read once to hash it and then linked into
+     * place, or, when it lives on another file system or links are not possible, hashed while it
+     * is copied over. Because the source itself becomes the blob, it is refused if its size or
+     * modification time change while it is hashed and linked; the caller can offer it again once
+     * it is complete. The source stays where it is until the returned blob is consumed and closed.
+     */
+    public Blob store(Path source) throws IOException {
+        if (!Files.getFileStore(source).equals(fileStore)) {
+            return copy(source);
+        }
+        BasicFileAttributes before = Files.readAttributes(source, BasicFileAttributes.class);
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        if (changed(source, before)) {
+            throw new IOException("File " + source + " changed while it was hashed");
+        }
+        Path target = pathFor(hash);
+        Files.createDirectories(target.getParent());
+        Lock lock = lockFor(hash);
+        lock.lock();
+        boolean created;
+        try {
+            created = createLink(target, source);
+            // The blob shares the source's inode, so a write that slipped in after the check
+            // above shows up here; drop the blob rather than keep bytes that do not match its name.
+            if (created && changed(target, before)) {
+                Files.deleteIfExists(target);
+                throw new IOException("File " + source + " changed while it was stored");
+            }
+        } catch (UnsupportedOperationException e) {
+            lock.unlock();
+            return copy(source);
+        } catch (IOException | RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+        if (!created) {
+            log.info("Content {} already stored", hash);
+        }
+        return new Blob(hash, target, created, source, lock);
+    }
+
+    /** Streams {@code in} into the store, hashing it on the way through. */
+    public Blob store(InputStream in) throws IOException {
+        return store(in, null);
+    }
+
+    private Blob copy(Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return store(in, source);
+        }
+    }
+
+    private Blob store(InputStream in, Path source) throws IOException {
+        // Not createTempFile: its owner-only permissions would carry over to the blob.
+        Path temp = incoming.resolve(UUID.randomUUID() + ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Lock lock = lockFor(hash);
+            lock.lock();
+            try {
+                return new Blob(hash, pathFor(hash), commit(temp, hash), source, lock);
+            } catch (IOException | RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path pathFor(String hash) {
+        if (hash.length() != 64 || !hash.chars().allMatch(HexFormat::isHexDigit)) {
+            throw new IllegalArgumentException("Invalid content hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash + ".jpg");
+    }
+
+    /**
+     * Hard-links {@code source} to {@code target}, falling back to a copy where links are not
+     * possible. Returns {@code false} if {@code target} already exists; any other failure,
+     * including a missing {@code source}, is thrown.
+     */
+    public static boolean link(Path source, Path target) throws IOException {
+        try {
+            return createLink(target, source);
+        } catch (UnsupportedOperationException e) {
+            try {
+                Files.copy(source, target);
+            } catch (FileAlreadyExistsException ex) {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the blob for {@code hash} and the given derivative files next to it if
+     * {@code unreferenced} still holds once no store of the same content is in progress. The
+     * check runs under the same per-hash lock that a {@link Blob} holds until it is closed, so a
+     * blob cannot disappear between being stored and being linked into a gallery.
+     */
+    public void release(String hash, Iterable<String> derivativeFileNames, BooleanSupplier unreferenced) {
+        Path blob = pathFor(hash);
+        Lock lock = lockFor(hash);
+        lock.lock();
+        try {
+            if (!unreferenced.getAsBoolean()) {
+                return;
+            }
+            Files.deleteIfExists(blob);
+            for (String name : derivativeFileNames) {
+                Files.deleteIfExists(blob.resolveSibling(name));
+            }
+            log.info("Released blob {}", hash);
+        } catch (IOException e) {
+            log.warn("Failed to release blob {}", hash, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock lockFor(String hash) {
+        return locks[HexFormat.fromHexDigits(hash, 0, 2) % locks.length];
+    }
+
+    // Called with the hash locked, so no other store of the same content can race the link.
+    // Where links are not possible, a plain move refuses an existing target instead of silently
+    // replacing it as a rename would.
+    private boolean commit(Path file, String hash) throws IOException {
+        Path target = pathFor(hash);
+        Files.createDirectories(target.getParent());
+        boolean created;
+        try {
+            created = createLink(target, file);
+        } catch (UnsupportedOperationException e) {
+            try {
+                Files.move(file, target);
+                created = true;
+            } catch (FileAlreadyExistsException ex) {
+                created = false;
+            }
+        }
+        if (!created) {
+            log.info("Content {} already stored", hash);
+        }
+        return created;
+    }
+
+    /**
+     * Returns {@code false} if {@code target} already exists, and throws
+     * {@link UnsupportedOperationException} when the file system cannot link the two (another
+     * device, or links not permitted there).
+     */
+    private static boolean createLink(Path target, Path source) throws IOException {
+        try {
+            Files.createLink(target, source);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (FileSystemException e) {
+            if (e.getClass() == FileSystemException.class && e.getReason() != null
+                    && LINK_UNSUPPORTED.stream().anyMatch(e.getReason()::contains)) {
+                throw new UnsupportedOperationException(e.getReason(), e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean changed(Path file, BasicFileAttributes before) throws IOException {
+        BasicFileAttributes now = Files.readAttributes(file, BasicFileAttributes.class);
+        return now.size() != before.size() || !now.lastModifiedTime().equals(before.lastModifiedTime());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A stored blob; {@code created} is false when identical content was already present. It
+     * keeps its hash locked against {@link #release} until closed. The file it was stored from,
+     * if any, is deleted on close once {@link #consume()} was called, so a caller that could
+     * not link the blob anywhere leaves the file to be offered again.
+     */
+    public static final class Blob implements AutoCloseable {
+        private final String hash;
+        private final Path path;
+        private final boolean created;
+        private final Path source;
+        private final Lock lock;
+        private boolean consumed;
+
+        private Blob(String hash, Path path, boolean created, Path source, Lock lock) {
+            this.hash = hash;
+            this.path = path;
+            this.created = created;
+            this.source = source;
+            this.lock = lock;
+        }
+
+        public String hash() {
+            return hash;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public boolean created() {
+            return created;
+        }
+
+        public String fileName() {
+            return hash + ".jpg";
+        }
+
+        public void consume() {
+            consumed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (consumed && source != null) {
+                    Files.deleteIfExists(source);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
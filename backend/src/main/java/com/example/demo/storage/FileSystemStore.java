@@ -1,38 +1,195 @@
 package com.example.demo.storage;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class FileSystemStore {
+    private static final int MAX_RANGES = 16;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
     private final Path root;
 
     public FileSystemStore(@Value("${storage.root}") String root) {
-        this.root = Path.of(root);
+        this.root = Path.of(root).toAbsolutePath().normalize();
     }
 
-    public InputStreamRange open(String key, String range) throws IOException {
+    public Path resolve(String key) {
         Path p = root.resolve(key).normalize();
         if (!p.startsWith(root)) throw new SecurityException("path-traversal");
-        long size = Files.size(p);
-        long start = 0, end = size - 1;
-        if (range != null && range.startsWith("bytes=")) {
-            String[] parts = range.substring(6).split("-", 2);
-            if (!parts[0].isEmpty()) start = Long.parseLong(parts[0]);
-            if (!parts[1].isEmpty()) end = Long.parseLong(parts[1]);
+        return p;
+    }
+
+    public String keyOf(Path path) {
+        return root.relativize(path.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    public StoredFile stat(String key) throws IOException {
+        Path p = resolve(key);
+        BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) throw new NoSuchFileException(key);
+        return new StoredFile(p, attrs.size(), attrs.lastModifiedTime().to(TimeUnit.MICROSECONDS));
+    }
+
+    /**
+     * Resolves a {@code Range} header against {@code file}. An empty list means the whole file
+     * should be sent: no header, a non-byte unit, a malformed spec or more than
+     * {@value #MAX_RANGES} ranges. Suffix ranges ({@code bytes=-500}) and open ends are
+     * supported; ends past EOF are clamped. Overlapping or adjacent ranges are coalesced in
+     * ascending order, and a set that covers the whole file is also answered with the whole file.
+     *
+     * @throws RangeNotSatisfiableException if no requested range overlaps the file
+     */
+    public List<FileRange> ranges(StoredFile file, String header) {
+        if (header == null || !header.startsWith("bytes=")) return List.of();
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return List.of();
+
+        long size = file.size();
+        List<FileRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String[] parts = spec.trim().split("-", 2);
+            if (parts.length != 2) return List.of();
+            long start, end;
+            try {
+                if (parts[0].isEmpty()) {
+                    long suffix = Long.parseLong(parts[1]);
+                    if (suffix <= 0) continue;
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(parts[0]);
+                    end = parts[1].isEmpty() ? Long.MAX_VALUE : Long.parseLong(parts[1]);
+                    if (start < 0 || end < start) return List.of();
+                    end = Math.min(end, size - 1);
+                }
+            } catch (NumberFormatException e) {
+                return List.of();
+            }
+            if (start < size) {
+                ranges.add(new FileRange(file.path(), size, start, end));
+            }
+        }
+        if (ranges.isEmpty()) throw new RangeNotSatisfiableException(size);
+        List<FileRange> merged = coalesce(ranges);
+        if (merged.size() == 1 && merged.get(0).length() == size) return List.of();
+        return merged;
+    }
+
+    // Stops a header like "bytes=0-,0-,..." from sending the same bytes once per range.
+    private static List<FileRange> coalesce(List<FileRange> ranges) {
+        ranges.sort(Comparator.comparingLong(FileRange::start));
+        List<FileRange> merged = new ArrayList<>(ranges.size());
+        FileRange current = ranges.get(0);
+        for (FileRange next : ranges.subList(1, ranges.size())) {
+            if (next.start() <= current.end() + 1) {
+                current = new FileRange(current.path(), current.size(), current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * Copies the bytes of {@code range} to {@code out} with {@link FileChannel#transferTo},
+     * letting the JDK move data without staging it through heap buffers where it can.
+     */
+    public void transferTo(FileRange range, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(range.path(), StandardOpenOption.READ)) {
+            transferTo(channel, range, Channels.newChannel(out));
+        }
+    }
+
+    /**
+     * Writes {@code ranges} as a {@code multipart/byteranges} body separated by
+     * {@code boundary}, reusing one channel for all parts.
+     */
+    public void transferMultipart(List<FileRange> ranges, String contentType, String boundary, OutputStream out)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(ranges.get(0).path(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (FileRange range : ranges) {
+                out.write(partHeader(range, contentType, boundary));
+                transferTo(channel, range, target);
+                out.write(CRLF);
+            }
+            out.write(closing(boundary));
+        }
+    }
+
+    public static long multipartLength(List<FileRange> ranges, String contentType, String boundary) {
+        long length = closing(boundary).length;
+        for (FileRange range : ranges) {
+            length += partHeader(range, contentType, boundary).length + range.length() + CRLF.length;
         }
-        var channel = FileChannel.open(p, StandardOpenOption.READ);
-        channel.position(start);
-        return new InputStreamRange(Channels.newInputStream(channel), size, start, end);
+        return length;
+    }
+
+    private static void transferTo(FileChannel channel, FileRange range, WritableByteChannel target) throws IOException {
+        long position = range.start();
+        long remaining = range.length();
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0) break;
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    private static byte[] partHeader(FileRange range, String contentType, String boundary) {
+        return ("--" + boundary + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Range: " + range.contentRange() + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] closing(String boundary) {
+        return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
     }
 
-    public record InputStreamRange(InputStream in, long size, long start, long end) {}
+    public record StoredFile(Path path, long size, long modifiedMicros) {
+        public FileRange whole() {
+            return new FileRange(path, size, 0, size - 1);
+        }
+
+        public long lastModified() {
+            return modifiedMicros / 1000;
+        }
+
+        /**
+         * Strong validator built from size and modification time; files are only ever replaced
+         * wholesale, so these change whenever the content does.
+         */
+        public String etag() {
+            return "\"" + Long.toHexString(size) + "-" + Long.toHexString(modifiedMicros) + "\"";
+        }
+    }
+
+    public record FileRange(Path path, long size, long start, long end) {
+        public long length() {
+            return end - start + 1;
+        }
+
+        public String contentRange() {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
 }
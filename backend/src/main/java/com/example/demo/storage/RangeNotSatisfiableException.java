@@ -0,0 +1,16 @@
+package com.example.demo.storage;
+
+public class RangeNotSatisfiableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long size;
+
+    public RangeNotSatisfiableException(long size) {
+        super("range-not-satisfiable");
+        this.size = size;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.imaging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Builds minimal JPEGs byte by byte: SOI, an APP1 Exif segment whose IFD0 points to an Exif IFD
+ * carrying {@code DateTimeOriginal} behind other entries, then SOS.
+ */
+class ExifDateReaderTest {
+    private static final String DATE = "2021:07:04 09:30:15";
+    private static final LocalDateTime EXPECTED = LocalDateTime.of(2021, 7, 4, 9, 30, 15);
+
+    // TIFF offsets of the structures written by exif()
+    private static final int IFD0 = 8;
+    private static final int EXIF_IFD = IFD0 + 2 + 2 * 12 + 4;
+    private static final int DATE_VALUE = EXIF_IFD + 2 + 3 * 12 + 4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBigEndianTiff() throws IOException {
+        assertEquals(EXPECTED, read(jpeg(app1(exif(ByteOrder.BIG_ENDIAN)))));
+    }
+
+    @Test
+    void readsLittleEndianTiff() throws IOException {
+        assertEquals(EXPECTED, read(jpeg(app1(exif(ByteOrder.LITTLE_ENDIAN)))));
+    }
+
+    @Test
+    void skipsSegmentsBeforeTheExifApp1() throws IOException {
+        byte[] xmp = segment(0xE1, "http://ns.adobe.com/xap/1.0/\0<x:xmpmeta/>".getBytes(StandardCharsets.US_ASCII));
+        byte[] jfif = segment(0xE0, "JFIF\0\1\1\0\0\1\0\1\0\0".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(EXPECTED, read(jpeg(jfif, xmp, app1(exif(ByteOrder.BIG_ENDIAN)))));
+    }
+
+    @Test
+    void missingApp1HasNoDate() throws IOException {
+        byte[] jfif = segment(0xE0, "JFIF\0\1\1\0\0\1\0\1\0\0".getBytes(StandardCharsets.US_ASCII));
+        assertNull(read(jpeg(jfif)));
+    }
+
+    @Test
+    void missingDateTimeOriginalHasNoDate() throws IOException {
+        byte[] tiff = exif(ByteOrder.LITTLE_ENDIAN);
+        // Retag 0x9003 as 0x9004 (DateTimeDigitized).
+        tiff[EXIF_IFD + 2 + 2 * 12] = 0x04;
+        assertNull(read(jpeg(app1(tiff))));
+    }
+
+    @Test
+    void truncatedFileHasNoDate() throws IOException {
+        byte[] whole = jpeg(app1(exif(ByteOrder.BIG_ENDIAN)));
+        // Cut inside the Exif IFD, before the date entry.
+        assertNull(read(Arrays.copyOf(whole, 2 + 4 + 6 + EXIF_IFD + 10)));
+    }
+
+    @Test
+    void dateOutsideTheSegmentIsIgnored() throws IOException {
+        byte[] tiff = exif(ByteOrder.BIG_ENDIAN);
+        // The segment claims to end before the date value, so the value must not be read.
+        assertNull(read(jpeg(app1(Arrays.copyOf(tiff, DATE_VALUE)))));
+    }
+
+    @Test
+    void nonJpegHasNoDate() throws IOException {
+        assertNull(read("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static byte[] exif(ByteOrder order) {
+        byte[] date = (DATE + "\0").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer tiff = ByteBuffer.allocate(DATE_VALUE + date.length).order(order);
+        tiff.put(order == ByteOrder.LITTLE_ENDIAN ? new byte[] {'I', 'I'} : new byte[] {'M', 'M'});
+        tiff.putShort((short) 42).putInt(IFD0);
+
+        tiff.putShort((short) 2);
+        entry(tiff, 0x0112, 3, 1, 1 << (order == ByteOrder.BIG_ENDIAN ? 16 : 0)); // Orientation
+        entry(tiff, 0x8769, 4, 1, EXIF_IFD);
+        tiff.putInt(0);
+
+        // Out of tag order on purpose: the reader must not stop at the first larger tag.
+        tiff.putShort((short) 3);
+        entry(tiff, 0xA002, 4, 1, 640); // PixelXDimension
+        entry(tiff, 0x9209, 3, 1, 0); // Flash
+        entry(tiff, 0x9003, 2, date.length, DATE_VALUE);
+        tiff.putInt(0);
+
+        tiff.put(date);
+        return tiff.array();
+    }
+
+    private static void entry(ByteBuffer tiff, int tag, int type, int count, int value) {
+        tiff.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+
+    private static byte[] app1(byte[] tiff) {
+        byte[] payload = new byte[6 + tiff.length];
+        System.arraycopy("Exif\0\0".getBytes(StandardCharsets.US_ASCII), 0, payload, 0, 6);
+        System.arraycopy(tiff, 0, payload, 6, tiff.length);
+        return segment(0xE1, payload);
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length)
+                .put((byte) 0xFF).put((byte) marker).putShort((short) (payload.length + 2)).put(payload)
+                .array();
+    }
+
+    private static byte[] jpeg(byte[]... segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        for (byte[] segment : segments) {
+            out.writeBytes(segment);
+        }
+        out.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xDA, 0, 2});
+        return out.toByteArray();
+    }
+
+    private LocalDateTime read(byte[] bytes) throws IOException {
+        Path file = dir.resolve("photo.jpg");
+        Files.write(file, bytes);
+        return ExifDateReader.dateTimeOriginal(file);
+    }
+}
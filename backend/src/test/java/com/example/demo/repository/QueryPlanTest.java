@@ -0,0 +1,80 @@
+package com.example.demo.repository;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@code EXPLAIN} on the shapes of the hot QR code and gallery queries against the schema
+ * generated from the entities, and fails unless each one reads through the {@code @Index} meant for
+ * it, without a full table scan, and, where that index supplies the order, without a sort step.
+ * H2's automatic foreign key indexes would otherwise hide a dropped index. The plans are H2's,
+ * which is what the application runs on.
+ */
+@DataJpaTest
+class QueryPlanTest {
+    private static final String TABLE_SCAN = ".TABLESCAN";
+    private static final String INDEX_SORTED = "/* INDEX SORTED */";
+    // Literal arguments keep the statements valid for EXPLAIN; only the access path matters.
+    private static final String AT = "TIMESTAMP '2000-01-01 00:00:00'";
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("QRCode by uuid", "IDX_QR_CODES_UUID", false,
+                        "SELECT id FROM qr_codes WHERE uuid = 'x'"),
+                Arguments.of("QRCode floor by createdAt", "IDX_QR_CODES_CREATED_AT", true,
+                        "SELECT id FROM qr_codes WHERE created_at <= " + AT + " ORDER BY created_at DESC LIMIT 1"),
+                Arguments.of("QRCodes by user", "IDX_QR_CODES_USER_ID", false,
+                        "SELECT id FROM qr_codes WHERE user_id = 1"),
+                Arguments.of("QRCodes by folder connection", "IDX_QR_CODE_CONNECTION_FOLDER_FOLDER", false,
+                        "SELECT q.id FROM qr_codes q JOIN qr_code_connection_folder f ON q.id = f.qr_code_id "
+                                + "WHERE f.connection_folder_id = 1"),
+                Arguments.of("Items page by createdAt", "IDX_QR_CODE_ITEMS_CODE_CREATED", true,
+                        "SELECT id FROM qr_code_items WHERE qr_code_id = 1 "
+                                + "ORDER BY qr_code_id, created_at DESC LIMIT 10"),
+                Arguments.of("Items page by exifCreatedAt", "IDX_QR_CODE_ITEMS_CODE_EXIF", true,
+                        "SELECT id FROM qr_code_items WHERE qr_code_id = 1 "
+                                + "ORDER BY qr_code_id, exif_created_at DESC LIMIT 10"),
+                Arguments.of("Items keyset by createdAt", "IDX_QR_CODE_ITEMS_CODE_CREATED", true,
+                        "SELECT id FROM qr_code_items WHERE qr_code_id = 1 AND (created_at < " + AT
+                                + " OR (created_at = " + AT + " AND id < 1)) "
+                                + "ORDER BY qr_code_id, created_at DESC, id DESC LIMIT 10"),
+                Arguments.of("Items keyset by sortAt", "IDX_QR_CODE_ITEMS_CODE_SORT", true,
+                        "SELECT id FROM qr_code_items WHERE qr_code_id = 1 AND (sort_at < " + AT
+                                + " OR (sort_at = " + AT + " AND id < 1)) "
+                                + "ORDER BY qr_code_id, sort_at DESC, id DESC LIMIT 10"),
+                Arguments.of("Item by uuid", "IDX_QR_CODE_ITEMS_UUID", false,
+                        "SELECT id FROM qr_code_items WHERE uuid = 'x'"),
+                Arguments.of("Item references by content hash", "IDX_QR_CODE_ITEMS_CONTENT_HASH", false,
+                        "SELECT COUNT(*) FROM qr_code_items WHERE content_hash = 'x'"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void usesTheIntendedIndex(String name, String index, boolean sorted, String sql) {
+        String plan = jdbc.queryForObject("EXPLAIN " + sql, String.class);
+        assertNotNull(plan);
+        String upper = plan.toUpperCase(Locale.ROOT);
+        String shown = plan.replaceAll("\\s+", " ");
+        assertFalse(upper.contains(TABLE_SCAN), () -> name + " scans a table: " + shown);
+        // H2 suffixes generated index names, e.g. IDX_QR_CODES_UUID_INDEX_7 for the unique index.
+        assertTrue(upper.matches("(?s).*PUBLIC\\." + index + "(_INDEX_\\d+)?\\b.*"),
+                () -> name + " does not use " + index + ": " + shown);
+        if (sorted) {
+            assertTrue(upper.contains(INDEX_SORTED), () -> name + " sorts its rows: " + shown);
+        }
+    }
+}
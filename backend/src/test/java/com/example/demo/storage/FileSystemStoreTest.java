@@ -0,0 +1,92 @@
+package com.example.demo.storage;
+
+import com.example.demo.storage.FileSystemStore.FileRange;
+import com.example.demo.storage.FileSystemStore.StoredFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Covers the {@code Range} header parser. It only looks at the size of the file, so no file is
+ * needed on disk.
+ */
+class FileSystemStoreTest {
+    private static final long SIZE = 1000;
+
+    private final FileSystemStore store = new FileSystemStore("target/test-storage");
+    private final StoredFile file = new StoredFile(Path.of("photo.jpg"), SIZE, 0);
+
+    @Test
+    void suffixRangeCoversTheTail() {
+        assertEquals(List.of(range(900, 999)), store.ranges(file, "bytes=-100"));
+    }
+
+    @Test
+    void suffixLongerThanTheFileIsTheWholeFile() {
+        assertEquals(List.of(), store.ranges(file, "bytes=-5000"));
+    }
+
+    @Test
+    void endPastEofIsClamped() {
+        assertEquals(List.of(range(500, 999)), store.ranges(file, "bytes=500-99999"));
+        assertEquals(List.of(range(500, 999)), store.ranges(file, "bytes=500-"));
+    }
+
+    @Test
+    void overlappingAndAdjacentRangesAreCoalescedInOrder() {
+        assertEquals(List.of(range(0, 199), range(500, 599)),
+                store.ranges(file, "bytes=500-599,100-199,0-99,150-160"));
+    }
+
+    @Test
+    void rangesCoveringTheWholeFileAreAnsweredWithTheWholeFile() {
+        assertEquals(List.of(), store.ranges(file, "bytes=500-,0-499"));
+    }
+
+    @Test
+    void tooManyRangesAreIgnored() {
+        assertEquals(16, store.ranges(file, spans(16)).size());
+        assertEquals(List.of(), store.ranges(file, spans(17)));
+    }
+
+    @Test
+    void malformedHeadersAreIgnored() {
+        assertEquals(List.of(), store.ranges(file, null));
+        assertEquals(List.of(), store.ranges(file, "items=0-1"));
+        assertEquals(List.of(), store.ranges(file, "bytes=abc"));
+        assertEquals(List.of(), store.ranges(file, "bytes=10-5"));
+    }
+
+    @Test
+    void rangesStartingPastEofAreNotSatisfiable() {
+        RangeNotSatisfiableException e = assertThrows(RangeNotSatisfiableException.class,
+                () -> store.ranges(file, "bytes=1000-1100,5000-"));
+        assertEquals(SIZE, e.getSize());
+        assertThrows(RangeNotSatisfiableException.class, () -> store.ranges(file, "bytes=-0"));
+    }
+
+    @Test
+    void unsatisfiableRangesAreDroppedWhenOthersOverlap() {
+        List<FileRange> ranges = store.ranges(file, "bytes=2000-,10-19");
+        assertEquals(List.of(range(10, 19)), ranges);
+        assertEquals(10, ranges.get(0).length());
+    }
+
+    private FileRange range(long start, long end) {
+        return new FileRange(file.path(), SIZE, start, end);
+    }
+
+    // n disjoint ten-byte ranges, spaced so that none of them coalesce
+    private static String spans(int n) {
+        StringJoiner header = new StringJoiner(",", "bytes=", "");
+        for (int i = 0; i < n; i++) {
+            header.add(i * 20 + "-" + (i * 20 + 9));
+        }
+        return header.toString();
+    }
+}
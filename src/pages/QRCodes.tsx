@@ -56,7 +56,6 @@ import { Badge } from '@/components/ui/badge'
 interface QRCode {
   id: number
   uuid: string
-  blob: string
   description: string
   createdAt: string
   createdBy?: string